@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+// Scores large batches of Nim positions at once, for puzzle mining and tablebase checks.
+// Positions are passed in struct-of-arrays form: columns[p][i] is the size of pile p in position i, so every pass
+// walks contiguous long[]s. When the JVM is started with --add-modules jdk.incubator.vector, the nim-sum and
+// winning-move passes run as VectorBatchKernels' explicit SIMD loops; otherwise they are plain element-wise loops,
+// which HotSpot's C2 may still vectorize on its own. Both give the same results.
+// Positions are processed in blocks small enough that the per-block results stay in L1 cache across the column passes.
+public final class BatchEvaluator {
+
+    // Status values written to the status array.
+    public static final byte LOSS = 0; // the player to move loses against perfect play
+    public static final byte WIN = 1;  // the player to move can force a win
+
+    private static final int BLOCK = 1024;
+
+    // Whether the Vector API kernels can be used. The module is only in the boot layer when asked for, and
+    // VectorBatchKernels is not loaded at all otherwise.
+    static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private BatchEvaluator() {
+    }
+
+    // Evaluates positions [0, count) and fills in, for each one, its nim-sum, its status and the winning move
+    // (NimEngine.NO_MOVE for lost positions). The move chosen is for the first pile that carries the nim-sum's highest
+    // bit, which matches NimEngine.winningMove() for positions of up to eight piles.
+    public static void evaluate(long[][] columns, int count, long[] nimSums, byte[] status, long[] winningMoves) {
+        evaluate(columns, count, nimSums, status, winningMoves, VECTORIZED);
+    }
+
+    // As evaluate, choosing the kernels; EngineBenchmark compares the two. vectorized requires VECTORIZED.
+    static void evaluate(long[][] columns, int count, long[] nimSums, byte[] status, long[] winningMoves,
+                         boolean vectorized) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("At least one pile is required");
+        }
+        for (int start = 0; start < count; start += BLOCK) {
+            int end = Math.min(count, start + BLOCK);
+            if (vectorized) {
+                VectorBatchKernels.nimSums(columns, start, end, nimSums);
+            } else {
+                nimSums(columns, start, end, nimSums);
+            }
+            statuses(nimSums, start, end, status);
+            if (vectorized) {
+                VectorBatchKernels.winningMoves(columns, nimSums, start, end, winningMoves);
+            } else {
+                winningMoves(columns, nimSums, start, end, winningMoves);
+            }
+        }
+    }
+
+    // Computes only the nim-sums of positions [0, count).
+    public static void nimSums(long[][] columns, int count, long[] nimSums) {
+        for (int start = 0; start < count; start += BLOCK) {
+            if (VECTORIZED) {
+                VectorBatchKernels.nimSums(columns, start, Math.min(count, start + BLOCK), nimSums);
+            } else {
+                nimSums(columns, start, Math.min(count, start + BLOCK), nimSums);
+            }
+        }
+    }
+
+    private static void nimSums(long[][] columns, int start, int end, long[] nimSums) {
+        long[] first = columns[0];
+        System.arraycopy(first, start, nimSums, start, end - start);
+        for (int p = 1; p < columns.length; p++) {
+            long[] column = columns[p];
+            for (int i = start; i < end; i++) {
+                nimSums[i] ^= column[i];
+            }
+        }
+    }
+
+    private static void statuses(long[] nimSums, int start, int end, byte[] status) {
+        for (int i = start; i < end; i++) {
+            status[i] = (byte) ((nimSums[i] | -nimSums[i]) >>> 63);
+        }
+    }
+
+    // Column by column, the first pile whose size drops when XORed with the nim-sum gives the winning move.
+    // Selects are written without branches so the loop body is the same for every lane.
+    private static void winningMoves(long[][] columns, long[] nimSums, int start, int end, long[] winningMoves) {
+        Arrays.fill(winningMoves, start, end, NimEngine.NO_MOVE);
+        for (int p = 0; p < columns.length; p++) {
+            long[] column = columns[p];
+            long pileBits = NimEngine.move(p, 0);
+            for (int i = start; i < end; i++) {
+                long size = column[i];
+                long target = size ^ nimSums[i];
+                long current = winningMoves[i];
+                boolean take = target < size & current == NimEngine.NO_MOVE;
+                winningMoves[i] = take ? pileBits | (size - target) : current;
+            }
+        }
+    }
+}
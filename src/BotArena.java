@@ -0,0 +1,382 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Tournaments between Strategy bots: a full round robin, or a Swiss system that pairs bots with similar scores for a
+// fixed number of rounds when every pairing would take too long.
+//
+// Each pairing plays a match of games from the same starting position, each bot moving first in half of them. Matches
+// are split into fork/join tasks of at most LEAF_GAMES games on a work-stealing pool, so long matches between search
+// bots and short ones between table lookups balance across the cores by themselves. As in SelfPlaySimulator, every task
+// splits its own SplittableRandom, so the games played are reproducible from the seed however the work is scheduled.
+// A strategy that returns an illegal move forfeits the game.
+//
+// Each task adds its results to a matrix of wins per pairing, under a lock taken once per task, and the ratings are
+// refitted from the matrix whenever the standings are read, so they follow the results as they stream in. They are
+// maximum-likelihood Elo ratings (the Bradley-Terry model) rather than incremental Elo, which with games arriving from
+// many threads would depend on the order in which the tasks happened to finish.
+//
+// Usage: java BotArena [round-robin|swiss] [games per pairing] [variant] [piles] [seed] [search]
+//   "search" adds alpha-beta and Monte Carlo search bots, which are far slower than the others.
+public final class BotArena {
+
+    public static final double INITIAL_RATING = 1500;
+    private static final long LEAF_GAMES = 1024;   // games played by one task before its results are reported
+    private static final int FIT_ITERATIONS = 10_000;
+
+    private final ForkJoinPool pool;
+    private final Strategy[] bots;
+    private final OctalGame rules;
+    private final long[] piles;
+    private final SplittableRandom random;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[][] wins;     // wins[a][b] = games bot a won against bot b, guarded by lock
+    private final double[] points;   // Swiss match points, guarded by lock
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder forfeits = new LongAdder();
+
+    // A bot's results so far.
+    public record Standing(String name, double rating, long wins, long losses, double points) {
+        public double score() {
+            long games = wins + losses;
+            return games == 0 ? 0 : (double) wins / games;
+        }
+    }
+
+    public BotArena(ForkJoinPool pool, List<Strategy> bots, OctalGame rules, long[] piles, long seed) {
+        if (bots.size() < 2) {
+            throw new IllegalArgumentException("An arena needs at least two bots");
+        }
+        this.pool = pool;
+        this.bots = bots.toArray(Strategy[]::new);
+        this.rules = rules;
+        this.piles = piles.clone();
+        new NimEngine(rules, piles); // reject bad positions here rather than in a worker
+        this.random = new SplittableRandom(seed);
+        wins = new long[this.bots.length][this.bots.length];
+        points = new double[this.bots.length];
+    }
+
+    // Plays every pairing once.
+    public void roundRobin(long gamesPerPairing) {
+        List<Match> matches = new ArrayList<>();
+        for (int a = 0; a < bots.length; a++) {
+            for (int b = a + 1; b < bots.length; b++) {
+                matches.add(new Match(a, b, gamesPerPairing));
+            }
+        }
+        play(matches);
+    }
+
+    // Plays the given number of Swiss rounds. Each round pairs the bots in order of match points (then rating), each
+    // with the next one it has not met yet; with an odd number of bots the last one sits the round out for a point.
+    public void swiss(int rounds, long gamesPerPairing) {
+        boolean[][] met = new boolean[bots.length][bots.length];
+        for (int round = 0; round < rounds; round++) {
+            Integer[] order = new Integer[bots.length];
+            double[] ratings;
+            double[] standing = new double[bots.length];
+            lock.lock();
+            try {
+                ratings = fitRatings(wins);
+                System.arraycopy(points, 0, standing, 0, points.length);
+            } finally {
+                lock.unlock();
+            }
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> -standing[i])
+                    .thenComparingDouble(i -> -ratings[i]));
+            boolean[] paired = new boolean[bots.length];
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < order.length; i++) {
+                int a = order[i];
+                if (paired[a]) {
+                    continue;
+                }
+                int opponent = -1; // the next bot a has not met, or failing that the next one
+                for (int j = i + 1; j < order.length; j++) {
+                    int b = order[j];
+                    if (paired[b]) {
+                        continue;
+                    }
+                    if (!met[a][b]) {
+                        opponent = b;
+                        break;
+                    }
+                    if (opponent < 0) {
+                        opponent = b;
+                    }
+                }
+                paired[a] = true;
+                if (opponent < 0) {
+                    award(a, 1); // the bye
+                    continue;
+                }
+                paired[opponent] = true;
+                met[a][opponent] = met[opponent][a] = true;
+                matches.add(new Match(a, opponent, gamesPerPairing));
+            }
+            play(matches);
+            for (Match match : matches) {
+                long aWins = match.aWins.sum();
+                long bWins = match.games - aWins;
+                award(match.a, aWins > bWins ? 1 : aWins == bWins ? 0.5 : 0);
+                award(match.b, bWins > aWins ? 1 : aWins == bWins ? 0.5 : 0);
+            }
+        }
+    }
+
+    private void award(int bot, double matchPoints) {
+        lock.lock();
+        try {
+            points[bot] += matchPoints;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void play(List<Match> matches) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Match match : matches) {
+            // Split the generator up front so that every match gets the same stream on every run
+            tasks.add(new MatchTask(match, 0, match.games, random.split()));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    // The standings so far, best rated first. Safe to call while a tournament is running.
+    public List<Standing> standings() {
+        List<Standing> standings = new ArrayList<>();
+        lock.lock();
+        try {
+            double[] ratings = fitRatings(wins);
+            for (int a = 0; a < bots.length; a++) {
+                long won = Arrays.stream(wins[a]).sum();
+                long lost = 0;
+                for (long[] row : wins) {
+                    lost += row[a];
+                }
+                standings.add(new Standing(bots[a].name(), ratings[a], won, lost, points[a]));
+            }
+        } finally {
+            lock.unlock();
+        }
+        standings.sort(Comparator.comparingDouble(Standing::rating).reversed());
+        return standings;
+    }
+
+    public long gamesPlayed() {
+        return games.sum();
+    }
+
+    public long movesPlayed() {
+        return moves.sum();
+    }
+
+    public long forfeits() {
+        return forfeits.sum();
+    }
+
+    // Records one task's games, of which bot a won aWon.
+    private void report(int a, int b, long aWon, long count) {
+        lock.lock();
+        try {
+            wins[a][b] += aWon;
+            wins[b][a] += count - aWon;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Maximum-likelihood Elo ratings for a win matrix, by Hunter's minorization-maximization iteration for the
+    // Bradley-Terry model. Every bot is also credited with a win and a loss against a virtual opponent rated
+    // INITIAL_RATING, which anchors the scale and keeps the rating of a bot that wins or loses every game finite.
+    static double[] fitRatings(long[][] wins) {
+        int n = wins.length;
+        double[] strength = new double[n];
+        Arrays.fill(strength, 1);
+        double[] next = new double[n];
+        for (int iteration = 0; iteration < FIT_ITERATIONS; iteration++) {
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                double won = 1;
+                double weight = 2 / (strength[i] + 1);
+                for (int j = 0; j < n; j++) {
+                    long games = wins[i][j] + wins[j][i];
+                    if (j != i && games > 0) {
+                        won += wins[i][j];
+                        weight += games / (strength[i] + strength[j]);
+                    }
+                }
+                next[i] = won / weight;
+                change = Math.max(change, Math.abs(Math.log(next[i] / strength[i])));
+            }
+            System.arraycopy(next, 0, strength, 0, n);
+            if (change < 1e-10) {
+                break;
+            }
+        }
+        double[] ratings = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratings[i] = INITIAL_RATING + 400 * Math.log10(strength[i]);
+        }
+        return ratings;
+    }
+
+    private static final class Match {
+        final int a;
+        final int b;
+        final long games;
+        final LongAdder aWins = new LongAdder();
+
+        Match(int a, int b, long games) {
+            this.a = a;
+            this.b = b;
+            this.games = games;
+        }
+    }
+
+    // Games [from, from + count) of a match; bot a moves first in the even-numbered ones.
+    private final class MatchTask extends RecursiveAction {
+        private final Match match;
+        private final long from;
+        private final long count;
+        private final SplittableRandom random;
+
+        MatchTask(Match match, long from, long count, SplittableRandom random) {
+            this.match = match;
+            this.from = from;
+            this.count = count;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            if (count <= LEAF_GAMES) {
+                playGames();
+                return;
+            }
+            long half = count / 2;
+            invokeAll(new MatchTask(match, from, half, random.split()),
+                    new MatchTask(match, from + half, count - half, random.split()));
+        }
+
+        private void playGames() {
+            Strategy[] sides = {bots[match.a], bots[match.b]};
+            NimEngine engine = new NimEngine(rules, piles);
+            long played = 0;
+            long won = 0;
+            for (long game = 0; game < count; game++) {
+                engine.reset();
+                int turn = (int) ((from + game) & 1); // 0: bot a to move
+                int winner = -1;
+                while (!engine.isGameOver()) {
+                    if (!engine.apply(sides[turn].move(engine, random))) {
+                        forfeits.increment();
+                        winner = turn ^ 1;
+                        break;
+                    }
+                    played++;
+                    turn ^= 1;
+                }
+                if (winner < 0) {
+                    winner = turn ^ 1; // whoever took the last marker
+                }
+                if (winner == 0) {
+                    won++;
+                }
+            }
+            match.aWins.add(won);
+            games.add(count);
+            moves.add(played);
+            report(match.a, match.b, won, count);
+        }
+    }
+
+    // Twenty bots (seventeen without a tablebase), from random play through the XOR strategy with every front-end's
+    // fallback to XOR players that blunder a set fraction of their moves, plus two search bots if asked for.
+    public static List<Strategy> lineup(Tablebase tablebase, boolean search) {
+        List<Strategy> bots = new ArrayList<>(List.of(
+                Strategy.random(),
+                Strategy.takeOne(),
+                Strategy.greedy(),
+                Strategy.xor(Strategy.random()),
+                Strategy.xor(Strategy.takeOne()),
+                Strategy.xor(Strategy.greedy())));
+        if (tablebase != null) {
+            bots.add(Strategy.tablebase(tablebase, Strategy.xor(Strategy.random())));   // Nim, DoubleTroubleGUI
+            bots.add(Strategy.tablebase(tablebase, Strategy.xor(Strategy.takeOne())));  // DoubleTroubleGame
+            bots.add(Strategy.tablebase(tablebase, Strategy.random()));
+        }
+        for (double rate : new double[]{0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.5, 0.7, 0.9}) {
+            bots.add(Strategy.erring(Strategy.xor(Strategy.random()), rate));
+        }
+        bots.add(Strategy.erring(Strategy.greedy(), 0.5));
+        bots.add(Strategy.erring(Strategy.takeOne(), 0.5));
+        if (search) {
+            bots.add(Strategy.search(SearchEngine.Algorithm.ALPHA_BETA, 1, 4));
+            bots.add(Strategy.search(SearchEngine.Algorithm.MCTS, 1, TranspositionTable.MAX_DEPTH));
+        }
+        return bots;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean swiss = args.length > 0 && args[0].equalsIgnoreCase("swiss");
+        long gamesPerPairing = args.length > 1 ? Long.parseLong(args[1]) : 100_000L;
+        OctalGame rules = args.length > 2 ? OctalGame.parse(args[2]) : OctalGame.NIM;
+        long[] piles = args.length > 3 ? NimEngine.parsePiles(args[3]) : new long[]{3, 7, 5};
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42L;
+        boolean search = args.length > 5 && args[5].equalsIgnoreCase("search");
+
+        List<Strategy> bots = lineup(piles.length == 3 ? Tablebase.forStandardGame(rules) : null, search);
+        BotArena arena = new BotArena(ForkJoinPool.commonPool(), bots, rules, piles, seed);
+        int rounds = 2 + (32 - Integer.numberOfLeadingZeros(bots.size() - 1)); // log2(bots) rounds and two more
+        System.out.printf("%s: %d bots, %,d games per pairing, %s %s, seed %d, %d worker threads%n",
+                swiss ? rounds + " Swiss rounds" : "Round robin", bots.size(), gamesPerPairing, rules,
+                Arrays.toString(piles), seed, ForkJoinPool.commonPool().getParallelism());
+
+        long start = System.nanoTime();
+        Thread tournament = new Thread(() -> {
+            if (swiss) {
+                arena.swiss(rounds, gamesPerPairing);
+            } else {
+                arena.roundRobin(gamesPerPairing);
+            }
+        }, "arena");
+        tournament.start();
+        while (!tournament.join(Duration.ofSeconds(2))) {
+            Standing leader = arena.standings().get(0);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("  %,14d games  %,12.0f games/sec  leader %s (%.0f)%n",
+                    arena.gamesPlayed(), arena.gamesPlayed() / seconds, leader.name(), leader.rating());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        bots.forEach(Strategy::close); // drops the search bots' engines
+
+        System.out.printf("%n%-28s %7s %13s %13s %7s%s%n", "Bot", "Elo", "Won", "Lost", "Score",
+                swiss ? "  Points" : "");
+        for (Standing s : arena.standings()) {
+            System.out.printf("%-28s %7.0f %,13d %,13d %6.1f%%%s%n", s.name(), s.rating(), s.wins(), s.losses(),
+                    100 * s.score(), swiss ? String.format("  %6.1f", s.points()) : "");
+        }
+        System.out.printf("%n%,d games (%,d moves, %,d forfeits) in %.1f s: %,.0f games/sec%n", arena.gamesPlayed(),
+                arena.movesPlayed(), arena.forfeits(), seconds, arena.gamesPlayed() / seconds);
+    }
+}
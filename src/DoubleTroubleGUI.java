@@ -1,17 +1,121 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.util.Random;
 import java.util.Scanner;
 
-public class DoubleTroubleGUI {
-    private int greenMarkers = 3;
-    private int yellowMarkers = 7;
-    private int orangeMarkers = 5;
+public class DoubleTroubleGUI implements AutoCloseable {
+    private final NimEngine engine = new NimEngine();
+    private final Tablebase tablebase = Tablebase.forStandardGame(OctalGame.NIM); // null if unavailable
     private boolean playerTurn = true;
     private final Random random = new Random();
     private final Scanner scanner = new Scanner(System.in);
+    private final SearchEngine.Difficulty difficulty; // null: play the nim-sum strategy without searching
+    private final SearchEngine search;
+    // The search at the difficulty, or the nim-sum strategy: the tablebase's move when it covers the position (the
+    // quickest win, or the longest resistance), otherwise the winning move, or a random one from a lost position
+    private final Strategy strategy;
 
-    public static void main(String[] args) {
-        DoubleTroubleGUI game = new DoubleTroubleGUI();
-        game.startGame();
+    public DoubleTroubleGUI() {
+        this(null);
+    }
+
+    public DoubleTroubleGUI(SearchEngine.Difficulty difficulty) {
+        this.difficulty = difficulty;
+        this.search = difficulty != null ? new SearchEngine() : null;
+        this.strategy = search != null ? Strategy.search(search, difficulty)
+                : Strategy.tablebase(tablebase, Strategy.xor(Strategy.random()));
+    }
+
+    // Usage: java DoubleTroubleGUI [easy|medium|hard|expert]
+    //        java DoubleTroubleGUI --batch <moveFile|-> [--quiet] [easy|medium|hard|expert]
+    // Batch mode plays the player's moves from a script or stdin, one per line as typed in a game, through as many games
+    // as the script lasts, and ends with a summary. --quiet turns off everything but the summary.
+    public static void main(String[] args) throws IOException {
+        if (args.length > 1 && args[0].equals("--batch")) {
+            boolean quiet = args.length > 2 && args[2].equals("--quiet");
+            int difficultyArg = quiet ? 3 : 2;
+            try (DoubleTroubleGUI game = new DoubleTroubleGUI(
+                    args.length > difficultyArg ? SearchEngine.Difficulty.parse(args[difficultyArg]) : null);
+                 ReadableByteChannel in = args[1].equals("-") ? Channels.newChannel(System.in)
+                         : FileChannel.open(Path.of(args[1]))) {
+                game.playBatch(in, quiet ? null : new FileOutputStream(FileDescriptor.out).getChannel());
+            }
+            return;
+        }
+        try (DoubleTroubleGUI game = new DoubleTroubleGUI(args.length > 0 ? SearchEngine.Difficulty.parse(args[0]) : null)) {
+            game.startGame();
+        }
+    }
+
+    // Stops the search engine's threads, if it started any.
+    @Override
+    public void close() {
+        if (search != null) {
+            search.close();
+        }
+    }
+
+    // Plays scripted games until the script runs out. Lines that are not moves and moves that are illegal are skipped
+    // and counted, as the interactive game would ask again. The computer's random choices are seeded, so a script
+    // always plays out the same way.
+    private void playBatch(ReadableByteChannel in, FileChannel outChannel) throws IOException {
+        MoveScript.Reader script = new MoveScript.Reader(in);
+        MoveScript.Writer out = new MoveScript.Writer(outChannel);
+        random.setSeed(0);
+        engine.reset();
+        playerTurn = true;
+        long playerMoves = 0, computerMoves = 0, games = 0, playerWins = 0, invalid = 0, illegal = 0;
+        long start = System.nanoTime();
+        while (true) {
+            long move;
+            if (playerTurn) {
+                move = script.next();
+                if (move == MoveScript.END) {
+                    break;
+                } else if (move == MoveScript.INVALID || !engine.apply(move)) {
+                    if (move == MoveScript.INVALID) {
+                        invalid++;
+                    } else {
+                        illegal++;
+                    }
+                    out.append("Line ").append(script.line()).append(move == MoveScript.INVALID ? ": invalid input\n" : ": invalid move\n");
+                    continue;
+                }
+                playerMoves++;
+                out.append("You take ");
+            } else {
+                move = strategyMove();
+                engine.apply(move);
+                computerMoves++;
+                out.append("Computer takes ");
+            }
+            if (out.enabled()) {
+                out.append(NimEngine.moveCount(move)).append(" from ").append(pileName(NimEngine.movePile(move)))
+                        .append(" -> ").append(engine.pile(NimEngine.GREEN)).append(" ").append(engine.pile(NimEngine.YELLOW))
+                        .append(" ").append(engine.pile(NimEngine.ORANGE)).append("\n");
+            }
+            if (engine.isGameOver()) {
+                games++;
+                if (playerTurn) {
+                    playerWins++;
+                }
+                out.append(playerTurn ? "You win game " : "Computer wins game ").append(games).append("\n");
+                engine.reset();
+                playerTurn = true;
+            } else {
+                playerTurn = !playerTurn;
+            }
+        }
+        out.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%,d games (%,d won by the player), %,d player and %,d computer moves, %,d invalid lines, "
+                        + "%,d illegal moves in %.2f s: %,.0f lines/sec%n", games, playerWins, playerMoves, computerMoves,
+                invalid, illegal, seconds, script.line() / seconds);
     }
 
     private void startGame() {
@@ -53,98 +157,79 @@ public class DoubleTroubleGUI {
 
     private void computerTurn() {
         System.out.println("Computer's turn...");
-        int xorSum = greenMarkers ^ yellowMarkers ^ orangeMarkers;
-        if (xorSum == 0) {
-            randomMove();
+        if (search != null) {
+            searchedMove();
         } else {
-            strategicMove(xorSum);
+            boolean winning = engine.nimSum() != 0;
+            long move = strategyMove();
+            engine.apply(move);
+            System.out.println("Computer takes " + NimEngine.moveCount(move) + " from " + pileName(NimEngine.movePile(move))
+                    + (winning ? " strategically." : "."));
         }
     }
 
     private boolean isGameOver() {
-        return greenMarkers == 0 && yellowMarkers == 0 && orangeMarkers == 0;
+        return engine.isGameOver();
     }
 
     private void displayGameState() {
-        System.out.printf("Green markers: %d, Yellow markers: %d, Orange markers: %d%n", greenMarkers, yellowMarkers, orangeMarkers);
+        System.out.printf("Green markers: %d, Yellow markers: %d, Orange markers: %d%n",
+                engine.pile(NimEngine.GREEN), engine.pile(NimEngine.YELLOW), engine.pile(NimEngine.ORANGE));
     }
 
+    // Whoever took the last marker wins. The turn has already passed on to the other side, so it is the player's win
+    // when it is the computer's turn.
     private void declareWinner() {
-        if (playerTurn) {
+        if (!playerTurn) {
             System.out.println("Congratulations! You won!");
         } else {
             System.out.println("Computer wins. Better luck next time!");
         }
     }
 
-    private void randomMove() {
-        int pile = random.nextInt(3);
-        int numberToRemove;
-        switch (pile) {
-            case 0:
-                if (greenMarkers > 0) {
-                    numberToRemove = 1 + random.nextInt(greenMarkers);
-                    greenMarkers -= numberToRemove;
-                    System.out.println("Computer takes " + numberToRemove + " from Green.");
-                }
-                break;
-            case 1:
-                if (yellowMarkers > 0) {
-                    numberToRemove = 1 + random.nextInt(yellowMarkers);
-                    yellowMarkers -= numberToRemove;
-                    System.out.println("Computer takes " + numberToRemove + " from Yellow.");
-                }
-                break;
-            case 2:
-                if (orangeMarkers > 0) {
-                    numberToRemove = 1 + random.nextInt(orangeMarkers);
-                    orangeMarkers -= numberToRemove;
-                    System.out.println("Computer takes " + numberToRemove + " from Orange.");
-                }
-                break;
-        }
+    private long strategyMove() {
+        return strategy.move(engine, random);
     }
 
-    private void strategicMove(int xorSum) {
-        if ((xorSum ^ greenMarkers) < greenMarkers) {
-            int takeFromGreen = greenMarkers - (xorSum ^ greenMarkers);
-            greenMarkers -= takeFromGreen;
-            System.out.println("Computer takes " + takeFromGreen + " from Green strategically.");
-        } else if ((xorSum ^ yellowMarkers) < yellowMarkers) {
-            int takeFromYellow = yellowMarkers - (xorSum ^ yellowMarkers);
-            yellowMarkers -= takeFromYellow;
-            System.out.println("Computer takes " + takeFromYellow + " from Yellow strategically.");
-        } else if ((xorSum ^ orangeMarkers) < orangeMarkers) {
-            int takeFromOrange = orangeMarkers - (xorSum ^ orangeMarkers);
-            orangeMarkers -= takeFromOrange;
-            System.out.println("Computer takes " + takeFromOrange + " from Orange strategically.");
-        }
+    // Plays the move the search engine finds within the difficulty's time budget.
+    private void searchedMove() {
+        SearchEngine.Result result = search.search(engine, SearchEngine.Algorithm.ALPHA_BETA, difficulty);
+        long move = result.move();
+        engine.apply(move);
+        System.out.printf("Computer takes %d from %s (searched %,d positions, %,.0f per second).%n",
+                NimEngine.moveCount(move), pileName(NimEngine.movePile(move)), result.nodes(), result.nodesPerSecond());
     }
 
     private boolean attemptMove(char pile, int numberToRemove) {
+        int index = pileIndex(pile);
+        if (index >= 0 && engine.apply(index, numberToRemove)) {
+            System.out.println("You take " + numberToRemove + " from " + pileName(index) + ".");
+            return true;
+        }
+        return false;
+    }
+
+    private static int pileIndex(char pile) {
         switch (pile) {
             case 'G':
-                if (numberToRemove > 0 && numberToRemove <= greenMarkers) {
-                    greenMarkers -= numberToRemove;
-                    System.out.println("You take " + numberToRemove + " from Green.");
-                    return true;
-                }
-                break;
+                return NimEngine.GREEN;
             case 'Y':
-                if (numberToRemove > 0 && numberToRemove <= yellowMarkers) {
-                    yellowMarkers -= numberToRemove;
-                    System.out.println("You take " + numberToRemove + " from Yellow.");
-                    return true;
-                }
-                break;
+                return NimEngine.YELLOW;
             case 'O':
-                if (numberToRemove > 0 && numberToRemove <= orangeMarkers) {
-                    orangeMarkers -= numberToRemove;
-                    System.out.println("You take " + numberToRemove + " from Orange.");
-                    return true;
-                }
-                break;
+                return NimEngine.ORANGE;
+            default:
+                return -1;
+        }
+    }
+
+    private static String pileName(int pile) {
+        switch (pile) {
+            case NimEngine.GREEN:
+                return "Green";
+            case NimEngine.YELLOW:
+                return "Yellow";
+            default:
+                return "Orange";
         }
-        return false;
     }
 }
@@ -1,35 +1,89 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DoubleTroubleGame extends JFrame {
-    private int greenMarkers = 3, yellowMarkers = 7, orangeMarkers = 5;
-    private int playerWins = 0, computerWins = 0;
+    private final NimEngine engine;
+    private final Tournament tournament; // rounds, turns and score; the window only draws it and feeds it moves
+    private final GameEventRing events = new GameEventRing(4096); // the tournament as it happens, for spectators
     private final Random random = new Random();
+    private final SearchEngine search; // searches variant positions outside the tablebase; null in plain Nim
+    // The computer's moves: the quickest win, or the longest-resisting loss, when the position is in the endgame
+    // tablebase; beyond it, a trained policy's move where it covers the position, which answers at once instead of
+    // after a search's time budget; otherwise a search of the variant, or the simple strategy in plain Nim.
+    private final Strategy strategy;
+    private final Strategy simple = Strategy.xor(Strategy.takeOne());
+    // The computer works out its moves here, never on the EDT. Moves computed for an earlier game are dropped.
+    private final ExecutorService computerPlayer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "computer-player");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> thinking;
+    private int gameId;
     private JButton greenButton, yellowButton, orangeButton, newGameButton;
     private JButton quitButton;
 
     private JLabel statusLabel, scoreLabel;
-    private boolean playerTurn;
-    private final int roundsNeededToWin;
+    private JTextArea moveLog;
+    private PileView pileView;
 
     public DoubleTroubleGame(int bestOfRounds) {
-        roundsNeededToWin = (bestOfRounds / 2) + 1;
+        this(bestOfRounds, OctalGame.NIM, 3, 7, 5);
+    }
+
+    public DoubleTroubleGame(int bestOfRounds, OctalGame rules, long... startingPiles) {
+        this(bestOfRounds, rules, SearchEngine.Difficulty.MEDIUM, startingPiles);
+    }
+
+    // Plays the tournament under variant rules from the given Green, Yellow and Orange starting counts. Outside the
+    // endgame tablebase the computer then searches for its moves within the difficulty's time budget.
+    public DoubleTroubleGame(int bestOfRounds, OctalGame rules, SearchEngine.Difficulty difficulty, long... startingPiles) {
+        if (startingPiles.length != 3) {
+            throw new IllegalArgumentException("Double Trouble is played on three piles");
+        }
+        engine = new NimEngine(rules, startingPiles);
+        Tablebase tablebase = Tablebase.forStandardGame(rules); // null if unavailable
+        LearnedPolicy policy = LearnedPolicy.openDefault(rules); // from the policy.file property; may be null
+        search = rules.isNim() ? null : new SearchEngine();
+        strategy = Strategy.tablebase(tablebase, Strategy.learned(policy,
+                search != null ? Strategy.search(search, difficulty) : simple));
+        tournament = new Tournament(engine, bestOfRounds);
+        GameJournal journal = GameJournal.openDefault();
+        TournamentStats stats = TournamentStats.openDefault();
+        tournament.setEventSink(GameEventSink.tee(events, journal == null ? null : journal.recorder(engine),
+                stats == null ? null : stats.recorder(TournamentStats.defaultPlayer(), engine)));
         setupGUI();
-        resetGame();
+        startNewTournament();
+    }
+
+    // The live event stream of this window's tournament. Spectators subscribe to it and poll from their own threads.
+    public GameEventRing events() {
+        return events;
     }
 
     private void setupGUI() {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                shutdown();
+            }
+        });
         setSize(400, 300); // Set the size of the window
-        setTitle("Double Trouble Tournament"); // Set the title of the window
+        setTitle(engine.rules().isNim() ? "Double Trouble Tournament" : "Double Trouble Tournament (" + engine.rules() + ")"); // Set the title of the window
         setLayout(new FlowLayout()); // Use a FlowLayout for simplicity
 
         // Initialize buttons for marker piles with initial counts and colors
-        greenButton = createButton("Green: " + greenMarkers, Color.GREEN);
-        yellowButton = createButton("Yellow: " + yellowMarkers, Color.YELLOW);
-        orangeButton = createButton("Orange: " + orangeMarkers, Color.ORANGE);
+        greenButton = createButton("Green: " + engine.pile(NimEngine.GREEN), Color.GREEN);
+        yellowButton = createButton("Yellow: " + engine.pile(NimEngine.YELLOW), Color.YELLOW);
+        orangeButton = createButton("Orange: " + engine.pile(NimEngine.ORANGE), Color.ORANGE);
         greenButton.addActionListener(e -> initiatePlayerMove('G'));
         yellowButton.addActionListener(e -> initiatePlayerMove('Y'));
         orangeButton.addActionListener(e -> initiatePlayerMove('O'));
@@ -46,16 +100,28 @@ public class DoubleTroubleGame extends JFrame {
         // Score label for displaying the current tournament scores
         scoreLabel = new JLabel("Player Wins: 0, Computer Wins: 0", SwingConstants.CENTER);
 
+        // Every marker of every pile, redrawn only where a move changed it
+        pileView = new PileView(engine);
+
+        // Move log, which reports moves and results without blocking the window like a message dialog
+        moveLog = new JTextArea(8, 32);
+        moveLog.setEditable(false);
+
         // Add all components to the JFrame's content pane
         add(greenButton);
         add(yellowButton);
         add(orangeButton);
+        add(pileView);
         add(newGameButton);
         add(statusLabel);
         add(scoreLabel);
+        add(new JScrollPane(moveLog));
         // Initialize the Quit button and its action listener
         quitButton = new JButton("Quit Tournament");
-        quitButton.addActionListener(e -> System.exit(0));
+        quitButton.addActionListener(e -> {
+            shutdown();
+            System.exit(0);
+        });
         add(quitButton); // Add the Quit button to the frame
 
 
@@ -65,49 +131,74 @@ public class DoubleTroubleGame extends JFrame {
     }
 
     private void startNewTournament() {
-        // Reset scores for a new tournament
-        playerWins = 0;
-        computerWins = 0;
-
-        // Reset the markers in each pile to their initial values
-        resetGame();
-
-        // Optionally ask who starts the new game
-        determineFirstTurn();
+        // Drop any move the computer is still working out for the old tournament
+        cancelThinking();
 
-        // Update the GUI components to reflect the reset state
+        // Reset scores and markers for a new tournament
+        tournament.restart();
         updateGUI();
-
-        // Enable the marker buttons for gameplay
-        enableGameButtons(true);
+        enableGameButtons(false);
 
         // The new game button should be disabled now as the tournament has started
         newGameButton.setEnabled(false);
+        statusLabel.setText("Welcome to Double Trouble! Who starts?");
+        scheduleAdvance();
+    }
 
-        // Set a status message indicating the start of the tournament or who's turn it is
-        if(playerTurn) {
-            statusLabel.setText("New tournament started. Player's turn.");
-        } else {
-            statusLabel.setText("New tournament started. Computer's turn.");
-            SwingUtilities.invokeLater(this::computerTurn);
+    // Runs the tournament one step at a time. A step that does not have to wait for the player or the computer
+    // schedules the next one as a separate EDT event, so the stack stays flat however many rounds are played.
+    private void advance() {
+        switch (tournament.phase()) {
+            case ROUND_START -> {
+                // Ask the player if they want to go first
+                int response = JOptionPane.showConfirmDialog(this, "Do you want to go first?", "Choose Starting Player", JOptionPane.YES_NO_OPTION);
+                tournament.startRound(response == JOptionPane.YES_OPTION ? Tournament.PLAYER : Tournament.COMPUTER);
+                updateGUI();
+                scheduleAdvance();
+            }
+            case TURN -> {
+                if (tournament.toMove() == Tournament.COMPUTER) {
+                    computerTurn();
+                } else {
+                    enableGameButtons(true);
+                    statusLabel.setText("Player's turn. Choose a pile and number of markers to remove.");
+                }
+            }
+            case ROUND_OVER -> {
+                log(tournament.roundWinner() == Tournament.COMPUTER ? "Computer wins the round!" : "Player wins the round!");
+                updateScoreLabel();
+                tournament.nextRound();
+                scheduleAdvance();
+            }
+            case TOURNAMENT_OVER -> {
+                String winner = tournament.tournamentWinner() == Tournament.PLAYER ? "Player" : "Computer";
+                log(winner + " wins the tournament!");
+                statusLabel.setText(winner + " wins the tournament! Press 'Start New Tournament' to play again.");
+                enableGameButtons(false);
+                newGameButton.setEnabled(true);
+            }
         }
     }
 
+    private void scheduleAdvance() {
+        SwingUtilities.invokeLater(this::advance);
+    }
+
     private void initiatePlayerMove(char color) {
         // Ask the player for the number of markers they want to remove
         String input = JOptionPane.showInputDialog(this, "How many markers do you want to remove from " + color + " pile?");
         try {
-            int number = Integer.parseInt(input); // Convert the input to an integer
+            long number = Long.parseLong(input); // Convert the input to a number
             if (number < 1) {
-                // If the number is not positive, show an error message
-                JOptionPane.showMessageDialog(this, "Please enter a positive number.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                // If the number is not positive, report it in the log
+                log("Please enter a positive number.");
                 return;
             }
             // Now, execute the player's move with the specified color and number
             playerMove(color, number);
         } catch (NumberFormatException ex) {
-            // If the input is not an integer, show an error message
-            JOptionPane.showMessageDialog(this, "Invalid input. Please enter a number.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            // If the input is not an integer, report it in the log
+            log("Invalid input. Please enter a number.");
         }
     }
 
@@ -121,43 +212,20 @@ public class DoubleTroubleGame extends JFrame {
     }
 
 
-    private void resetGame() {
-        // Reset marker counts to their initial values
-        greenMarkers = 3;
-        yellowMarkers = 7;
-        orangeMarkers = 5;
-
-        // Reset scores
-        playerWins = 0;
-        computerWins = 0;
-
-        // Update the GUI to reflect the reset state
-        updateGUI();
-
-        // Optionally, decide who goes first in the new game or tournament
-        determineFirstTurn();
-
-        // Enable the game buttons for a new start
-        enableGameButtons(true);
-
-        // Disable the "Start New Tournament" button until the current game/tournament is completed
-        newGameButton.setEnabled(false);
-
-        // Set the initial status message
-        statusLabel.setText("Welcome to Double Trouble! Who starts?");
+    private void updateGUI() {
+        updateGUI(false);
     }
 
-    private void updateGUI() {
-        // Update buttons with the initial marker counts
-        greenButton.setText("Green: " + greenMarkers);
-        yellowButton.setText("Yellow: " + yellowMarkers);
-        orangeButton.setText("Orange: " + orangeMarkers);
+    // Brings the piles and score up to date. Each component repaints only itself, and only if it changed; the pile
+    // view fades out markers the computer removed when animate is set.
+    private void updateGUI(boolean animate) {
+        greenButton.setText("Green: " + engine.pile(NimEngine.GREEN));
+        yellowButton.setText("Yellow: " + engine.pile(NimEngine.YELLOW));
+        orangeButton.setText("Orange: " + engine.pile(NimEngine.ORANGE));
+        pileView.refresh(animate);
 
         // Update the score label
-        scoreLabel.setText("Player Wins: " + playerWins + ", Computer Wins: " + computerWins);
-
-        // Repaint the frame to ensure updates are visible
-        repaint();
+        scoreLabel.setText("Player Wins: " + tournament.wins(Tournament.PLAYER) + ", Computer Wins: " + tournament.wins(Tournament.COMPUTER));
     }
 
     private void enableGameButtons(boolean enable) {
@@ -167,170 +235,159 @@ public class DoubleTroubleGame extends JFrame {
         orangeButton.setEnabled(enable);
     }
 
-    private void determineFirstTurn() {
-        // This method asks the player if they want to go first and sets the playerTurn accordingly
-        int response = JOptionPane.showConfirmDialog(this, "Do you want to go first?", "Choose Starting Player", JOptionPane.YES_NO_OPTION);
-        playerTurn = response == JOptionPane.YES_OPTION;
-
-        if (!playerTurn) {
-            // If the player chooses not to start, immediately trigger the computer's turn
-            computerTurn();
-        } else {
-            // Update the status label to indicate it's the player's turn
-            statusLabel.setText("Player's turn. Choose a pile and number of markers to remove.");
+    // Works out the computer's move on the background thread, so the window stays responsive however long a search
+    // takes, and plays it on the EDT when it is ready. If working it out fails, the failure is logged and the computer
+    // plays the simple move instead, so the tournament never waits on a move that will not come.
+    private void computerTurn() {
+        if (thinking != null) {
+            return; // already working on this position
         }
+        enableGameButtons(false);
+        statusLabel.setText("Computer is thinking...");
+        NimEngine position = new NimEngine(engine.rules(), engine.piles());
+        int game = gameId;
+        thinking = computerPlayer.submit(() -> {
+            long move;
+            try {
+                move = chooseComputerMove(position);
+            } catch (RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (game == gameId) {
+                        log("Computer's analysis failed (" + e.getMessage() + "); it plays a simple move instead.");
+                    }
+                });
+                move = simpleMove(position);
+            }
+            long chosen = move;
+            SwingUtilities.invokeLater(() -> playComputerMove(game, chosen));
+        });
     }
 
-    private void computerTurn() {
-        int xorSum = greenMarkers ^ yellowMarkers ^ orangeMarkers;
-
-        // Check if there is a winning move available
-        if (xorSum != 0) {
-            // Find and make a winning move
-            makeSmartMove(xorSum);
-        } else {
-            // No winning move available, make a random move
-            makeRandomMove();
-        }
+    // Runs on the computer-player thread and only reads its own copy of the position.
+    private long chooseComputerMove(NimEngine position) {
+        return strategy.move(position, random);
+    }
 
-        updateGUI(); // Update the GUI with the new state
-        checkForWin(); // Check if this move wins the game
+    // Make the move that results in a zero XOR sum of the piles if there is one; otherwise remove a single marker
+    // from a random pile. Also what the computer falls back on when its analysis fails.
+    private long simpleMove(NimEngine position) {
+        return simple.move(position, random);
     }
 
-    private void makeSmartMove(int xorSum) {
-        // Attempt to make a move that results in a zero XOR sum
-        if (greenMarkers > 0 && ((greenMarkers ^ xorSum) < greenMarkers)) {
-            int removeCount = greenMarkers - (greenMarkers ^ xorSum);
-            greenMarkers -= removeCount;
-            JOptionPane.showMessageDialog(this, "Computer removed " + removeCount + " from the green pile.");
-        } else if (yellowMarkers > 0 && ((yellowMarkers ^ xorSum) < yellowMarkers)) {
-            int removeCount = yellowMarkers - (yellowMarkers ^ xorSum);
-            yellowMarkers -= removeCount;
-            JOptionPane.showMessageDialog(this, "Computer removed " + removeCount + " from the yellow pile.");
-        } else if (orangeMarkers > 0 && ((orangeMarkers ^ xorSum) < orangeMarkers)) {
-            int removeCount = orangeMarkers - (orangeMarkers ^ xorSum);
-            orangeMarkers -= removeCount;
-            JOptionPane.showMessageDialog(this, "Computer removed " + removeCount + " from the orange pile.");
-        } else {
-            makeRandomMove(); // Fallback if no direct smart move is found
+    private void playComputerMove(int game, long move) {
+        if (game != gameId) {
+            return; // the tournament was restarted while the computer was thinking
         }
+        thinking = null;
+        if (tournament.phase() != Tournament.Phase.TURN || tournament.toMove() != Tournament.COMPUTER) {
+            return;
+        }
+        if (!tournament.play(move)) {
+            log("Computer's analysis chose an illegal move; it plays a simple move instead.");
+            move = simpleMove(engine);
+            tournament.play(move);
+        }
+        String message = "Computer removed " + NimEngine.moveCount(move) + " from " + pileName(NimEngine.movePile(move));
+        statusLabel.setText(message);
+        log(message);
+        updateGUI(true); // Update the GUI with the new state, animating the computer's removal
+        scheduleAdvance();
     }
 
-    private void makeRandomMove() {
-        // Make a random move if no winning move is available
-        int pile = random.nextInt(3); // Randomly select a pile
-        int removeCount = 1; // Simplify to always remove 1 marker for the example
-
-        switch (pile) {
-            case 0:
-                if (greenMarkers > 0) {
-                    greenMarkers -= removeCount;
-                    statusLabel.setText("Computer removed 1 from Green");
-                }
-                break;
-            case 1:
-                if (yellowMarkers > 0) {
-                    yellowMarkers -= removeCount;
-                    statusLabel.setText("Computer removed 1 from Yellow");
-                }
-                break;
-            case 2:
-                if (orangeMarkers > 0) {
-                    orangeMarkers -= removeCount;
-                    statusLabel.setText("Computer removed 1 from Orange");
-                }
-                break;
+    // Cancels a computation in progress; its result, if it still arrives, belongs to an old game and is ignored.
+    private void cancelThinking() {
+        gameId++;
+        if (thinking != null) {
+            thinking.cancel(true);
+            thinking = null;
         }
     }
 
-    private void playerMove(char color, int number) {
-        boolean validMove = false;
-
-        // Check if the move is valid based on the selected color and number
-        switch (color) {
-            case 'G': // Player chose Green
-                if (number > 0 && number <= greenMarkers) {
-                    greenMarkers -= number;
-                    validMove = true;
-                    statusLabel.setText("Player removed " + number + " from Green");
-                }
-                break;
-            case 'Y': // Player chose Yellow
-                if (number > 0 && number <= yellowMarkers) {
-                    yellowMarkers -= number;
-                    validMove = true;
-                    statusLabel.setText("Player removed " + number + " from Yellow");
-                }
-                break;
-            case 'O': // Player chose Orange
-                if (number > 0 && number <= orangeMarkers) {
-                    orangeMarkers -= number;
-                    validMove = true;
-                    statusLabel.setText("Player removed " + number + " from Orange");
-                }
-                break;
+    // Stops the computer's thinking and its threads before the window goes away.
+    private void shutdown() {
+        cancelThinking();
+        computerPlayer.shutdownNow();
+        if (search != null) {
+            search.close();
         }
+    }
 
+    // Appends a line to the move log and keeps the newest line in view.
+    private void log(String message) {
+        moveLog.append(message + "\n");
+        moveLog.setCaretPosition(moveLog.getDocument().getLength());
+    }
+
+    private void playerMove(char color, long number) {
+        // Check if it is the player's turn and the move is valid based on the selected color and number
+        int pile = pileIndex(color);
+        boolean validMove = tournament.phase() == Tournament.Phase.TURN && tournament.toMove() == Tournament.PLAYER
+                && pile >= 0 && engine.isLegal(pile, number) && tournament.play(NimEngine.move(pile, number));
         if (!validMove) {
-            // If the move is not valid, show a message and do not switch turns
-            JOptionPane.showMessageDialog(this, "Invalid move. Please try again.", "Error", JOptionPane.ERROR_MESSAGE);
+            // If the move is not valid, say so in the log and do not switch turns
+            log("Invalid move. Please try again.");
             return;
         }
+        statusLabel.setText("Player removed " + number + " from " + pileName(pile));
+        log("Player removed " + number + " from " + pileName(pile));
 
-        // Move is valid, update the GUI to reflect the new state
+        // Move is valid, update the GUI and let the tournament decide what happens next
         updateGUI();
+        enableGameButtons(false);
+        scheduleAdvance();
+    }
 
-        // After the player's move, check for a win before switching to the computer's turn
-        if (!checkForWin()) {
-            // No win yet, proceed with the computer's turn
-            SwingUtilities.invokeLater(this::computerTurn);
+    private static int pileIndex(char color) {
+        switch (color) {
+            case 'G':
+                return NimEngine.GREEN;
+            case 'Y':
+                return NimEngine.YELLOW;
+            case 'O':
+                return NimEngine.ORANGE;
+            default:
+                return -1;
         }
     }
 
-    private boolean checkForWin() {
-        if (greenMarkers == 0 && yellowMarkers == 0 && orangeMarkers == 0) {
-            // Determine the winner based on who made the last move
-            if (!playerTurn) { // Since computerTurn method sets playerTurn to true at the end, this checks for computer's win
-                computerWins++;
-                JOptionPane.showMessageDialog(this, "Computer wins the round!");
-            } else {
-                playerWins++;
-                JOptionPane.showMessageDialog(this, "Player wins the round!");
-            }
-
-            updateScoreLabel(); // Update scores display
-
-            if (playerWins == roundsNeededToWin || computerWins == roundsNeededToWin) {
-                String winner = playerWins == roundsNeededToWin ? "Player" : "Computer";
-                JOptionPane.showMessageDialog(this, winner + " wins the tournament!");
-                prepareForNewTournament();
-            } else {
-                resetGame(); // Reset for a new round
-            }
-
-            // Toggle the turn AFTER win checking
-            playerTurn = !playerTurn;
-
-            return true;
+    private static String pileName(int pile) {
+        switch (pile) {
+            case NimEngine.GREEN:
+                return "Green";
+            case NimEngine.YELLOW:
+                return "Yellow";
+            default:
+                return "Orange";
         }
-        return false;
     }
 
     private void updateScoreLabel() {
         // Update the text to include matches won
+        long playerWins = tournament.wins(Tournament.PLAYER);
+        long computerWins = tournament.wins(Tournament.COMPUTER);
         scoreLabel.setText(String.format("Player Wins: %d, Computer Wins: %d", playerWins, computerWins));
         System.out.println("Updating score label: Player Wins: " + playerWins + ", Computer Wins: " + computerWins);
     }
 
-    private void prepareForNewTournament() {
-        // Reset scores and markers for a new tournament
-        playerWins = 0;
-        computerWins = 0;
-        resetGame(); // Resets the game for the next round or tournament
-        updateScoreLabel(); // Update the score display after resetting scores
-    }
-
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new DoubleTroubleGame(3).setVisible(true));
+        // Optional arguments pick a variant, e.g. "take-at-most-3" or an octal code such as "0.333", the starting piles,
+        // e.g. "3,7,5", and how long the computer may think about variant positions: easy, medium, hard or expert
+        OctalGame rules;
+        long[] piles;
+        SearchEngine.Difficulty difficulty;
+        try {
+            rules = args.length > 0 ? OctalGame.parse(args[0]) : OctalGame.NIM;
+            piles = args.length > 1 ? NimEngine.parsePiles(args[1]) : new long[]{3, 7, 5};
+            difficulty = args.length > 2 ? SearchEngine.Difficulty.parse(args[2]) : SearchEngine.Difficulty.MEDIUM;
+            new NimEngine(rules, piles); // rejects bad piles here rather than on the EDT
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java DoubleTroubleGame [variant: " + OctalGame.VARIANTS + "] [piles, e.g. 3,7,5]"
+                    + " [easy|medium|hard|expert]");
+            System.exit(2);
+            return;
+        }
+        EdtWatchdog.installFromProperty();
+        SwingUtilities.invokeLater(() -> new DoubleTroubleGame(3, rules, difficulty, piles).setVisible(true));
     }
 }
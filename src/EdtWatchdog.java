@@ -0,0 +1,120 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Logs every stretch of work on the Swing event dispatch thread that runs longer than a threshold, so a UI latency
+// regression shows up in the log instead of as a vague "the window froze".
+//
+// The watchdog replaces the system event queue with one that times each dispatch. A stretch of work ends whenever the
+// EDT goes back to waiting for events, which also happens inside a modal dialog's nested event loop, so an open
+// JOptionPane is not mistaken for a stall. A daemon thread prints the EDT's stack once while a stall is still in
+// progress, which shows where it is stuck even if the event never finishes.
+//
+// Enable it with EdtWatchdog.install(thresholdMillis); the front-ends read the threshold from the edt.stall.millis
+// system property (0 turns the watchdog off).
+public final class EdtWatchdog extends EventQueue {
+
+    private final long thresholdNanos;
+    private final Deque<AWTEvent> dispatching = new ArrayDeque<>(); // EDT only: the event whose handler is running
+    private final AtomicLong stalls = new AtomicLong();
+    private volatile long busySince;       // start of the current stretch of work, 0 while the EDT waits for events
+    private volatile long sampledStretch;  // busySince of the stretch whose stack trace has been printed
+    private volatile Thread eventThread;
+
+    private EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+    }
+
+    // Installs a watchdog on the system event queue and starts its monitor thread.
+    public static EdtWatchdog install(long thresholdMillis) {
+        if (thresholdMillis <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + thresholdMillis);
+        }
+        EdtWatchdog watchdog = new EdtWatchdog(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog);
+        Thread monitor = new Thread(watchdog::monitor, "edt-watchdog");
+        monitor.setDaemon(true);
+        monitor.start();
+        return watchdog;
+    }
+
+    // Installs a watchdog with the threshold from the edt.stall.millis system property (default 100 ms), unless it is 0.
+    public static void installFromProperty() {
+        long millis = Long.getLong("edt.stall.millis", 100);
+        if (millis > 0) {
+            install(millis);
+        }
+    }
+
+    // Number of stalls logged so far.
+    public long stalls() {
+        return stalls.get();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        eventThread = Thread.currentThread();
+        finishStretch(); // a nested dispatch interrupts the outer handler's stretch
+        dispatching.push(event);
+        busySince = System.nanoTime();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            finishStretch();
+            dispatching.pop();
+            if (!dispatching.isEmpty()) {
+                busySince = System.nanoTime(); // back in the outer handler
+            }
+        }
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        finishStretch(); // the EDT is about to wait
+        return super.getNextEvent();
+    }
+
+    private void finishStretch() {
+        long since = busySince;
+        if (since == 0) {
+            return;
+        }
+        busySince = 0;
+        long elapsed = System.nanoTime() - since;
+        if (elapsed >= thresholdNanos) {
+            stalls.incrementAndGet();
+            AWTEvent event = dispatching.peek();
+            System.err.printf("EDT stall: %.1f ms handling %s%n", elapsed / 1e6, event == null ? "?" : describe(event));
+        }
+    }
+
+    private void monitor() {
+        long interval = Math.max(1, thresholdNanos / 2_000_000L);
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long since = busySince;
+            Thread thread = eventThread;
+            if (since != 0 && since != sampledStretch && thread != null && System.nanoTime() - since >= thresholdNanos) {
+                sampledStretch = since;
+                StringBuilder trace = new StringBuilder("EDT busy for over ")
+                        .append(thresholdNanos / 1_000_000L).append(" ms, currently at:");
+                for (StackTraceElement frame : thread.getStackTrace()) {
+                    trace.append(System.lineSeparator()).append("    at ").append(frame);
+                }
+                System.err.println(trace);
+            }
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        String source = event.getSource() == null ? "" : " from " + event.getSource().getClass().getSimpleName();
+        return event.getClass().getSimpleName() + source + " (" + event.paramString() + ")";
+    }
+}
@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Microbenchmarks for the game's hot paths, run headless against NimEngine so no dialog or console output is measured.
+// Works like a small JMH: every benchmark is run for a few warm-up iterations, then timed over several measurement
+// iterations, for every combination of pile count and pile size. Results are printed as CSV so they can be checked
+// in and compared against a later run.
+//
+// What is measured, and which front-end code path it stands for:
+//   winningMove  - Nim.makeWinningMove, DoubleTroubleGame.makeSmartMove, DoubleTroubleGUI.strategicMove
+//   randomMove   - Nim.makeRandomMove, DoubleTroubleGUI.randomMove
+//   takeOneMove  - DoubleTroubleGame.makeRandomMove
+//   validateMove - the validation in Nim.makeMove, DoubleTroubleGame.playerMove, DoubleTroubleGUI.attemptMove
+//   playout      - applying moves until the board is empty (score is moves per second)
+//   nimSum       - the nim-sum read by solveNim/computerTurn
+//   batchEvaluate - BatchEvaluator scoring every position (nim-sum, status, winning move); score is positions per second
+//                   with the Vector API kernels when run with --add-modules jdk.incubator.vector
+//   batchEvaluateScalar - the same with the scalar loops, for comparison
+//
+// Usage: java EngineBenchmark [--quick] [--only name] [--out results.csv] [--compare benchmarks/baseline.csv]
+public final class EngineBenchmark {
+
+    private static final int[] PILE_COUNTS = {3, 64, 1024};
+    private static final int[] PILE_SIZES = {7, 1_000, 1_000_000};
+
+    // Number of distinct positions each benchmark cycles through, so the branch predictor cannot memorise one board.
+    private static final int POSITIONS = 256;
+    private static final int PROBES = 4096;
+
+    private interface Benchmark {
+        // Runs one batch of operations and returns the number of operations performed.
+        long run(State state, int batch);
+    }
+
+    // Pre-built inputs for one parameter combination.
+    private static final class State {
+        final NimEngine[] positions = new NimEngine[POSITIONS];
+        final int[] probePiles = new int[PROBES];
+        final int[] probeCounts = new int[PROBES];
+        final long[][] columns;  // the same positions in struct-of-arrays form, for BatchEvaluator
+        final long[] nimSums = new long[POSITIONS];
+        final byte[] status = new byte[POSITIONS];
+        final long[] winningMoves = new long[POSITIONS];
+        final SplittableRandom random;
+        final int pileCount;
+        long sink; // every result is folded in here so the JIT cannot discard the work
+        int cursor;
+
+        State(int pileCount, int maxSize, long seed) {
+            this.pileCount = pileCount;
+            random = new SplittableRandom(seed);
+            for (int p = 0; p < POSITIONS; p++) {
+                int[] piles = new int[pileCount];
+                for (int i = 0; i < pileCount; i++) {
+                    piles[i] = 1 + random.nextInt(maxSize);
+                }
+                // Give every position a non-zero nim-sum so winningMove always has work to do.
+                while (xor(piles) == 0) {
+                    piles[0] = 1 + random.nextInt(maxSize);
+                }
+                positions[p] = new NimEngine(piles);
+            }
+            columns = new long[pileCount][POSITIONS];
+            for (int p = 0; p < POSITIONS; p++) {
+                for (int i = 0; i < pileCount; i++) {
+                    columns[i][p] = positions[p].pile(i);
+                }
+            }
+            for (int i = 0; i < PROBES; i++) {
+                probePiles[i] = random.nextInt(pileCount + 1) - (i & 1); // includes out-of-range piles
+                probeCounts[i] = random.nextInt(maxSize + 2) - 1;        // includes zero, negative and too-large counts
+            }
+        }
+
+        NimEngine next() {
+            return positions[cursor++ & (POSITIONS - 1)];
+        }
+
+        private static int xor(int[] piles) {
+            int x = 0;
+            for (int size : piles) {
+                x ^= size;
+            }
+            return x;
+        }
+    }
+
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("winningMove", (s, batch) -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                acc += s.next().winningMove();
+            }
+            s.sink += acc;
+            return batch;
+        });
+        BENCHMARKS.put("randomMove", (s, batch) -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                acc += s.next().randomMove(s.random);
+            }
+            s.sink += acc;
+            return batch;
+        });
+        BENCHMARKS.put("takeOneMove", (s, batch) -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                acc += s.next().takeOneMove(s.random);
+            }
+            s.sink += acc;
+            return batch;
+        });
+        BENCHMARKS.put("validateMove", (s, batch) -> {
+            long acc = 0;
+            NimEngine engine = s.next();
+            for (int i = 0; i < batch; i++) {
+                int probe = i & (PROBES - 1);
+                if (engine.isLegal(s.probePiles[probe], s.probeCounts[probe])) {
+                    acc++;
+                }
+            }
+            s.sink += acc;
+            return batch;
+        });
+        BENCHMARKS.put("playout", (s, batch) -> {
+            // Plays whole games, so the batch size is only a lower bound on the number of moves.
+            long moves = 0;
+            while (moves < batch) {
+                NimEngine engine = s.next();
+                engine.reset();
+                while (!engine.isGameOver()) {
+                    engine.apply(engine.randomMove(s.random));
+                    moves++;
+                }
+            }
+            s.sink += moves;
+            return moves;
+        });
+        BENCHMARKS.put("nimSum", (s, batch) -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                acc += s.next().nimSum();
+            }
+            s.sink += acc;
+            return batch;
+        });
+        BENCHMARKS.put("batchEvaluate", (s, batch) -> {
+            long positions = 0;
+            while (positions < batch) {
+                BatchEvaluator.evaluate(s.columns, POSITIONS, s.nimSums, s.status, s.winningMoves);
+                s.sink += s.winningMoves[s.cursor++ & (POSITIONS - 1)];
+                positions += POSITIONS;
+            }
+            return positions;
+        });
+        BENCHMARKS.put("batchEvaluateScalar", (s, batch) -> {
+            long positions = 0;
+            while (positions < batch) {
+                BatchEvaluator.evaluate(s.columns, POSITIONS, s.nimSums, s.status, s.winningMoves, false);
+                s.sink += s.winningMoves[s.cursor++ & (POSITIONS - 1)];
+                positions += POSITIONS;
+            }
+            return positions;
+        });
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+
+    EngineBenchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    // One line of output: mean and standard deviation of ops/sec over the measurement iterations.
+    record Result(String benchmark, int piles, int maxSize, double opsPerSecond, double error) {
+        String key() {
+            return benchmark + "," + piles + "," + maxSize;
+        }
+    }
+
+    List<Result> runAll(String only, PrintStream progress) {
+        List<Result> results = new ArrayList<>();
+        long sink = 0;
+        for (Map.Entry<String, Benchmark> entry : BENCHMARKS.entrySet()) {
+            if (only != null && !only.equals(entry.getKey())) {
+                continue;
+            }
+            for (int piles : PILE_COUNTS) {
+                for (int maxSize : PILE_SIZES) {
+                    State state = new State(piles, maxSize, 42L);
+                    for (int i = 0; i < warmupIterations; i++) {
+                        iteration(entry.getValue(), state);
+                    }
+                    double[] scores = new double[measurementIterations];
+                    for (int i = 0; i < measurementIterations; i++) {
+                        scores[i] = iteration(entry.getValue(), state);
+                    }
+                    Result result = summarize(entry.getKey(), piles, maxSize, scores);
+                    progress.printf(Locale.ROOT, "%-14s piles=%-5d size=%-8d %,16.0f ops/s  +/- %,.0f%n",
+                            result.benchmark(), piles, maxSize, result.opsPerSecond(), result.error());
+                    results.add(result);
+                    sink += state.sink;
+                }
+            }
+        }
+        if (sink == 42) {
+            progress.println(); // keeps the accumulated results observably live
+        }
+        return results;
+    }
+
+    // Runs batches until the iteration time is used up and returns the measured ops/sec.
+    private double iteration(Benchmark benchmark, State state) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            ops += benchmark.run(state, 1024);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return ops * 1e9 / elapsed;
+    }
+
+    private static Result summarize(String name, int piles, int maxSize, double[] scores) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double stdDev = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        return new Result(name, piles, maxSize, mean, stdDev);
+    }
+
+    static String toCsv(List<Result> results) {
+        StringBuilder csv = new StringBuilder("benchmark,piles,maxSize,opsPerSecond,error\n");
+        for (Result r : results) {
+            csv.append(String.format(Locale.ROOT, "%s,%d,%d,%.0f,%.0f%n", r.benchmark(), r.piles(), r.maxSize(), r.opsPerSecond(), r.error()));
+        }
+        return csv.toString();
+    }
+
+    static Map<String, Result> readCsv(Path file) throws IOException {
+        Map<String, Result> results = new HashMap<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] f = line.split(",");
+            Result r = new Result(f[0], Integer.parseInt(f[1]), Integer.parseInt(f[2]), Double.parseDouble(f[3]), Double.parseDouble(f[4]));
+            results.put(r.key(), r);
+        }
+        return results;
+    }
+
+    // Prints the speed-up (or slow-down) of every benchmark relative to the baseline run.
+    static void compare(Map<String, Result> baseline, List<Result> current, PrintStream out) {
+        out.printf("%-14s %-6s %-8s %16s %16s %8s%n", "benchmark", "piles", "size", "baseline ops/s", "current ops/s", "ratio");
+        for (Result r : current) {
+            Result base = baseline.get(r.key());
+            if (base == null) {
+                out.printf(Locale.ROOT, "%-14s %-6d %-8d %16s %,16.0f %8s%n", r.benchmark(), r.piles(), r.maxSize(), "-", r.opsPerSecond(), "new");
+                continue;
+            }
+            double ratio = r.opsPerSecond() / base.opsPerSecond();
+            // Flag changes that are larger than the combined noise of both runs.
+            boolean significant = Math.abs(r.opsPerSecond() - base.opsPerSecond()) > 2 * (r.error() + base.error());
+            out.printf(Locale.ROOT, "%-14s %-6d %-8d %,16.0f %,16.0f %7.2fx%s%n", r.benchmark(), r.piles(), r.maxSize(),
+                    base.opsPerSecond(), r.opsPerSecond(), ratio, significant ? (ratio > 1 ? "  faster" : "  SLOWER") : "");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean quick = false;
+        String only = null;
+        Path out = null;
+        Path baseline = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--quick" -> quick = true;
+                case "--only" -> only = args[++i];
+                case "--out" -> out = Path.of(args[++i]);
+                case "--compare" -> baseline = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        EngineBenchmark harness = quick ? new EngineBenchmark(1, 3, 100) : new EngineBenchmark(3, 5, 500);
+        List<Result> results = harness.runAll(only, System.out);
+        String csv = toCsv(results);
+        if (out != null) {
+            Files.writeString(out, csv, StandardCharsets.UTF_8);
+        } else {
+            System.out.println();
+            System.out.print(csv);
+        }
+        if (baseline != null) {
+            System.out.println();
+            compare(readCsv(baseline), results, System.out);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// Binary indexed (Fenwick) tree over non-negative long weights, one per pile.
+// Supports point updates, prefix sums and "which pile does the r-th unit of weight fall in" in O(log n) each,
+// which is what the engine needs to pick a uniformly random marker (and so a uniformly random legal move)
+// without scanning the piles.
+final class FenwickTree {
+
+    private final long[] tree; // 1-based: tree[i] covers weights (i - lowbit(i), i]
+    private final int size;
+    private final int topStep; // highest power of two not above size, where the descent in find() starts
+
+    FenwickTree(int size) {
+        this.size = size;
+        tree = new long[size + 1];
+        topStep = size == 0 ? 0 : Integer.highestOneBit(size);
+    }
+
+    // Replaces every weight in O(n).
+    void build(long[] weights) {
+        for (int i = 1; i <= size; i++) {
+            tree[i] = weights[i - 1];
+        }
+        propagate();
+    }
+
+    // Replaces every weight with 1 where the given value is non-zero and 0 elsewhere, in O(n).
+    void buildNonZero(long[] values) {
+        for (int i = 1; i <= size; i++) {
+            tree[i] = values[i - 1] != 0 ? 1 : 0;
+        }
+        propagate();
+    }
+
+    private void propagate() {
+        for (int i = 1; i <= size; i++) {
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    void add(int index, long delta) {
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Sum of the weights of indices [0, index).
+    long prefixSum(int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    // Returns the index i with prefixSum(i) <= target < prefixSum(i + 1). The target must be below the total weight.
+    int find(long target) {
+        int position = 0;
+        long remaining = target;
+        for (int step = topStep; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= size && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+}
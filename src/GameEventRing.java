@@ -0,0 +1,259 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToLongFunction;
+
+// Live event stream for spectators, in the style of the LMAX Disruptor: one game thread publishes into a ring of
+// pre-allocated slots and any number of subscribers read behind it, each at its own pace and on its own thread.
+//
+// Publishing never waits and never allocates. Each slot carries the sequence number of the event it holds, written
+// last with release semantics, and is marked as being written before its fields change; a subscriber reads a slot's
+// fields between two checks of that number, a seqlock, so it sees a whole event or knows it missed one. A subscriber
+// that falls a full ring behind is lapped: instead of holding the game back it skips ahead, and counts the events it
+// lost.
+//
+// Usage: java GameEventRing [rounds] [capacity]   (a demo with one fast and one slow spectator)
+public final class GameEventRing implements GameEventSink {
+
+    private static final int TOURNAMENT_STARTED = 1;
+    private static final int ROUND_STARTED = 2;
+    private static final int MOVED = 3;
+    private static final int ROUND_WON = 4;
+    private static final int TOURNAMENT_WON = 5;
+
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle CURSOR;
+
+    static {
+        try {
+            CURSOR = MethodHandles.lookup().findVarHandle(GameEventRing.class, "cursor", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int mask;
+    private final long[] sequences; // sequence of the event in each slot; -1 while it is being written
+    private final int[] kinds;
+    private final int[] sides;
+    private final long[] values;    // the move, the winner's round count or the rounds needed to win
+    private long cursor;            // sequence of the next event; written by the game thread only
+
+    // A reader's place in the stream. Each subscription is read by one thread.
+    public final class Subscription {
+        private long next;
+        private long lost;
+
+        private Subscription(long next) {
+            this.next = next;
+        }
+
+        // Delivers up to limit waiting events to the sink in order and returns how many it delivered; 0 if none
+        // are waiting. Never blocks.
+        public int poll(GameEventSink sink, int limit) {
+            int delivered = 0;
+            while (delivered < limit) {
+                int slot = (int) next & mask;
+                long stamp = (long) SEQUENCES.getAcquire(sequences, slot);
+                if (stamp != next) {
+                    long published = (long) CURSOR.getAcquire(GameEventRing.this);
+                    if (published <= next) {
+                        break; // caught up
+                    }
+                    stamp = (long) SEQUENCES.getAcquire(sequences, slot);
+                    if (stamp != next) {
+                        skipAhead(published);
+                        continue;
+                    }
+                }
+                int kind = kinds[slot];
+                int side = sides[slot];
+                long value = values[slot];
+                VarHandle.loadLoadFence();
+                if ((long) SEQUENCES.getOpaque(sequences, slot) != next) {
+                    skipAhead((long) CURSOR.getAcquire(GameEventRing.this)); // overwritten while we read it
+                    continue;
+                }
+                next++;
+                delivered++;
+                dispatch(sink, kind, side, value);
+            }
+            return delivered;
+        }
+
+        // Sequence of the next event this subscription will deliver.
+        public long position() {
+            return next;
+        }
+
+        // Events skipped because the publisher lapped this subscription.
+        public long lost() {
+            return lost;
+        }
+
+        // Lands half a ring behind the publisher, so a consumer that is only slow does not get lapped again at once.
+        private void skipAhead(long published) {
+            long resume = Math.max(next + 1, published - (mask + 1) / 2);
+            lost += resume - next;
+            next = resume;
+        }
+    }
+
+    // A ring of the given number of slots, rounded up to a power of two.
+    public GameEventRing(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30: " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity - 1) << 1;
+        mask = slots - 1;
+        sequences = new long[slots];
+        kinds = new int[slots];
+        sides = new int[slots];
+        values = new long[slots];
+        for (int i = 0; i < slots; i++) {
+            sequences[i] = -1;
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Sequence of the next event to be published, i.e. the number published so far.
+    public long published() {
+        return (long) CURSOR.getAcquire(this);
+    }
+
+    // A subscription that starts with the next event published.
+    public Subscription subscribe() {
+        return new Subscription(published());
+    }
+
+    @Override
+    public void tournamentStarted(long roundsNeededToWin) {
+        publish(TOURNAMENT_STARTED, -1, roundsNeededToWin);
+    }
+
+    @Override
+    public void roundStarted(int firstToMove) {
+        publish(ROUND_STARTED, firstToMove, 0);
+    }
+
+    @Override
+    public void moved(int side, long move) {
+        publish(MOVED, side, move);
+    }
+
+    @Override
+    public void roundWon(int side, long wins) {
+        publish(ROUND_WON, side, wins);
+    }
+
+    @Override
+    public void tournamentWon(int side) {
+        publish(TOURNAMENT_WON, side, 0);
+    }
+
+    // Game thread only.
+    private void publish(int kind, int side, long value) {
+        long sequence = cursor;
+        int slot = (int) sequence & mask;
+        SEQUENCES.setOpaque(sequences, slot, -1L);
+        VarHandle.storeStoreFence();
+        kinds[slot] = kind;
+        sides[slot] = side;
+        values[slot] = value;
+        SEQUENCES.setRelease(sequences, slot, sequence);
+        CURSOR.setRelease(this, sequence + 1);
+    }
+
+    private static void dispatch(GameEventSink sink, int kind, int side, long value) {
+        switch (kind) {
+            case TOURNAMENT_STARTED -> sink.tournamentStarted(value);
+            case ROUND_STARTED -> sink.roundStarted(side);
+            case MOVED -> sink.moved(side, value);
+            case ROUND_WON -> sink.roundWon(side, value);
+            case TOURNAMENT_WON -> sink.tournamentWon(side);
+            default -> throw new AssertionError(kind);
+        }
+    }
+
+    // A spectator that keeps the score from the stream, to check it against the tournament's own.
+    private static final class Scoreboard implements GameEventSink {
+        final long[] wins = new long[2];
+        long moves;
+
+        @Override
+        public void moved(int side, long move) {
+            moves++;
+        }
+
+        @Override
+        public void roundWon(int side, long wins) {
+            this.wins[side] = wins;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long rounds = args.length > 0 ? Long.parseLong(args[0]) : 2_000_001L;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 16;
+        GameEventRing ring = new GameEventRing(capacity);
+        Tournament tournament = new Tournament(new NimEngine(), rounds);
+        tournament.setEventSink(ring);
+
+        // One spectator reads as fast as it can; the other takes a nap after every batch and will be lapped.
+        AtomicBoolean done = new AtomicBoolean();
+        Scoreboard fast = new Scoreboard();
+        Scoreboard slow = new Scoreboard();
+        GameEventRing.Subscription fastSubscription = ring.subscribe();
+        GameEventRing.Subscription slowSubscription = ring.subscribe();
+        Thread fastReader = new Thread(() -> {
+            while (!done.get() | fastSubscription.poll(fast, 1024) > 0) {
+                Thread.onSpinWait();
+            }
+        }, "fast-spectator");
+        Thread slowReader = new Thread(() -> {
+            while (!done.get() | slowSubscription.poll(slow, 256) > 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "slow-spectator");
+        fastReader.start();
+        slowReader.start();
+
+        SplittableRandom random = new SplittableRandom(42);
+        ToLongFunction<NimEngine> randomPlayer = engine -> engine.takeOneMove(random);
+        ToLongFunction<NimEngine> strategy = engine -> {
+            long move = engine.winningMove();
+            return move != NimEngine.NO_MOVE ? move : engine.takeOneMove(random);
+        };
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        tournament.restart(); // publishes its first event before measuring, so the ring's classes are loaded
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        tournament.playOut(randomPlayer, strategy);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        done.set(true);
+        fastReader.join();
+        slowReader.join();
+
+        System.out.printf("Published %,d events in %.2f s (%,.0f events/sec), %,d bytes allocated by the game thread%n",
+                ring.published(), seconds, ring.published() / seconds, allocated);
+        report("fast", fast, fastSubscription);
+        report("slow", slow, slowSubscription);
+        System.out.printf("tournament:     %,d moves, final score %,d-%,d%n", tournament.movesPlayed(),
+                tournament.wins(Tournament.PLAYER), tournament.wins(Tournament.COMPUTER));
+    }
+
+    private static void report(String name, Scoreboard board, Subscription subscription) {
+        System.out.printf("%s spectator: %,d events delivered, %,d lost; saw %,d moves and a final score of %,d-%,d%n",
+                name, subscription.position() - subscription.lost(), subscription.lost(), board.moves,
+                board.wins[Tournament.PLAYER], board.wins[Tournament.COMPUTER]);
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+// Receives what happens in a tournament as it happens. Tournament reports its transitions to one, GameEventRing is
+// one that fans the events out to spectators, and spectators are handed the events through one again. Arguments are
+// primitives so that reporting an event allocates nothing; methods the receiver does not care about can be left out.
+public interface GameEventSink {
+
+    GameEventSink NONE = new GameEventSink() {
+    };
+
+    // A sink that passes every event to each of the sinks in turn, skipping nulls.
+    static GameEventSink tee(GameEventSink... sinks) {
+        GameEventSink[] targets = Arrays.stream(sinks).filter(Objects::nonNull)
+                .toArray(GameEventSink[]::new);
+        if (targets.length <= 1) {
+            return targets.length == 0 ? NONE : targets[0];
+        }
+        return new GameEventSink() {
+            @Override
+            public void tournamentStarted(long roundsNeededToWin) {
+                for (GameEventSink sink : targets) {
+                    sink.tournamentStarted(roundsNeededToWin);
+                }
+            }
+
+            @Override
+            public void roundStarted(int firstToMove) {
+                for (GameEventSink sink : targets) {
+                    sink.roundStarted(firstToMove);
+                }
+            }
+
+            @Override
+            public void moved(int side, long move) {
+                for (GameEventSink sink : targets) {
+                    sink.moved(side, move);
+                }
+            }
+
+            @Override
+            public void roundWon(int side, long wins) {
+                for (GameEventSink sink : targets) {
+                    sink.roundWon(side, wins);
+                }
+            }
+
+            @Override
+            public void tournamentWon(int side) {
+                for (GameEventSink sink : targets) {
+                    sink.tournamentWon(side);
+                }
+            }
+
+            @Override
+            public void flush() {
+                for (GameEventSink sink : targets) {
+                    sink.flush();
+                }
+            }
+        };
+    }
+
+    // The score was cleared for a tournament won by the first side to take this many rounds; 0 for an open-ended
+    // series such as Nim's, which lasts until the player quits.
+    default void tournamentStarted(long roundsNeededToWin) {
+    }
+
+    // A round was set up on the starting position with this side (Tournament.PLAYER or COMPUTER) to move. A round
+    // still in progress was abandoned.
+    default void roundStarted(int firstToMove) {
+    }
+
+    // The side played the move, encoded as by NimEngine.move.
+    default void moved(int side, long move) {
+    }
+
+    // The side took the last marker, and has now won this many rounds.
+    default void roundWon(int side, long wins) {
+    }
+
+    default void tournamentWon(int side) {
+    }
+
+    // Passes on anything held back, e.g. before the program exits.
+    default void flush() {
+    }
+}
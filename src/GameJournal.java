@@ -0,0 +1,705 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+// Append-only record of every tournament played: moves, round results and tournament results, so scores and games
+// survive the JVM and can be replayed.
+//
+// The journal is a directory of segment files, journal-00000001.dtj and so on, each memory-mapped and filled front to
+// back. A Recorder, one per tournament and used by one thread, encodes events into a private buffer and appends it to
+// the segment as a block when the buffer fills, when the tournament ends, and after a round once the commit interval
+// has passed. Appending reserves space with an atomic add and copies the block in, so threads playing tournaments side
+// by side never take a lock. A reserved block's length is written negated at once and made positive once the block
+// is copied in, so replay skips a block whose writer died and reads on, and the first writer whose block does not fit
+// marks the end of the segment. A daemon thread commits to disk every interval, up to the first block still being written,
+// everything appended since the last time (group commit). The mapped pages belong to the OS, so a crashed JVM loses
+// only what its recorders had not yet appended, and a crashed machine what was not yet committed.
+//
+// Each journal holds a lock on the segments it writes. Opening a journal shrinks every segment nobody holds, left by a
+// process that has exited, to the blocks it contains and deletes those without any, so each run of a front-end costs
+// the space of its games rather than a whole segment.
+//
+// Segment: "DTJ1", the segment's base tournament id (8 bytes), then blocks, each 4-byte aligned:
+//   block  = length (4 bytes) | zigzag varint of tournament id - base id | records
+//            The length is negated while the block is being written; MIN_VALUE marks the end of the segment.
+//   record = tag byte (kind << 1 | side) followed by:
+//     TOURNAMENT  varint roundsNeededToWin (0 for an open-ended series), varint length + rules code, varint pile count,
+//                 varint per starting pile
+//     ROUND       nothing; side moves first
+//     MOVE        varint of count << pileBits | pile, where pileBits is the bit width of the highest pile index
+//     ROUND_WON   nothing; TOURNAMENT_WON nothing
+//
+// Usage: java GameJournal replay <directory> [tournamentId]
+//        java GameJournal bench [threads] [bestOfRounds]
+public final class GameJournal implements AutoCloseable {
+
+    private static final int MAGIC = 0x44544A31; // "DTJ1"
+    private static final int HEADER = 12;
+    private static final int TOURNAMENT = 1;
+    private static final int ROUND = 2;
+    private static final int MOVE = 3;
+    private static final int ROUND_WON = 4;
+    private static final int TOURNAMENT_WON = 5;
+    private static final int BLOCK = 4096;
+    private static final int END_OF_SEGMENT = Integer.MIN_VALUE;
+    private static final String SEGMENT_NAME = "journal-\\d{8}\\.dtj";
+
+    private static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long commitNanos;
+    private final AtomicLong tournamentIds;
+    private final List<Segment> retired = new ArrayList<>(); // rolled over, awaiting their last commit
+    private final Thread committer;
+    private volatile Segment current;
+    private volatile boolean closed;
+
+    private static final class Segment {
+        final Path file;
+        final FileChannel channel; // open while this journal writes to the segment, holding its lock
+        final MappedByteBuffer buffer;
+        final long baseId;
+        final AtomicLong next = new AtomicLong(HEADER); // first unreserved byte
+        int published = HEADER;                          // committer only: end of the blocks written in full
+        int committed;                                   // committer only
+
+        Segment(Path file, FileChannel channel, MappedByteBuffer buffer, long baseId) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.baseId = baseId;
+        }
+
+        int end() {
+            return (int) Math.min(next.get(), buffer.capacity());
+        }
+
+        // Moves published past the blocks whose writers have finished, in order. Returns whether the segment is
+        // complete: rolled over, with every block in it written.
+        boolean publish() {
+            int end = end();
+            while (published + 4 <= end) {
+                int length = (int) LENGTH.getAcquire(buffer, published);
+                if (length == END_OF_SEGMENT) {
+                    return true;
+                } else if (length <= 0) {
+                    return false; // reserved, but still being written
+                }
+                published += blockSize(length);
+            }
+            return published + 4 > buffer.capacity();
+        }
+    }
+
+    // Journals into the directory, creating it if needed, in segments of the given size, committing to disk at the
+    // given interval. Journals of several processes can share a directory; each writes its own segments.
+    public GameJournal(Path directory, int segmentMegabytes, long commitMillis) throws IOException {
+        if (segmentMegabytes < 1 || segmentMegabytes > 1024) {
+            throw new IllegalArgumentException("Segments must be between 1 and 1024 MiB: " + segmentMegabytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = (long) segmentMegabytes << 20;
+        this.commitNanos = Math.max(1, commitMillis) * 1_000_000L;
+        retireIdleSegments();
+        current = newSegment(-1);
+        tournamentIds = new AtomicLong(current.baseId);
+        committer = new Thread(this::commitLoop, "journal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    // The journal the front-ends use: the journal.dir system property, or doubletrouble-journal in the temporary
+    // directory. Returns null (and the game is played without one) if it cannot be opened.
+    public static GameJournal openDefault() {
+        Path directory = Path.of(System.getProperty("journal.dir",
+                Path.of(System.getProperty("java.io.tmpdir"), "doubletrouble-journal").toString()));
+        try {
+            GameJournal journal = new GameJournal(directory, 16, 10);
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-shutdown"));
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Playing without a game journal: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // A recorder for a tournament played on this engine, to be set as its event sink. Each tournamentStarted begins a
+    // new journaled tournament with a fresh id, from the engine's position at that moment.
+    public Recorder recorder(NimEngine engine) {
+        return new Recorder(engine);
+    }
+
+    // Encodes one tournament's events and appends them in blocks. Only the thread driving the tournament may use it.
+    public final class Recorder implements GameEventSink {
+        private final NimEngine engine;
+        private final int pileBits;
+        private byte[] block = new byte[BLOCK];
+        private int length;
+        private long id = -1;
+        private long appendedAt = System.nanoTime();
+
+        private Recorder(NimEngine engine) {
+            this.engine = engine;
+            this.pileBits = bitWidth(engine.pileCount() - 1);
+        }
+
+        // Id of the tournament being recorded, -1 before the first tournamentStarted.
+        public long tournamentId() {
+            return id;
+        }
+
+        @Override
+        public void tournamentStarted(long roundsNeededToWin) {
+            flush();
+            id = tournamentIds.getAndIncrement();
+            byte[] code = engine.rules().code().getBytes(StandardCharsets.US_ASCII);
+            reserve(32 + code.length + 10 * engine.pileCount());
+            block[length++] = (byte) (TOURNAMENT << 1);
+            putVarint(roundsNeededToWin);
+            putVarint(code.length);
+            System.arraycopy(code, 0, block, length, code.length);
+            length += code.length;
+            putVarint(engine.pileCount());
+            for (int i = 0; i < engine.pileCount(); i++) {
+                putVarint(engine.pile(i));
+            }
+        }
+
+        @Override
+        public void roundStarted(int firstToMove) {
+            tag(ROUND, firstToMove);
+        }
+
+        @Override
+        public void moved(int side, long move) {
+            if (tag(MOVE, side)) {
+                putVarint(NimEngine.moveCount(move) << pileBits | NimEngine.movePile(move));
+            }
+        }
+
+        @Override
+        public void roundWon(int side, long wins) {
+            if (tag(ROUND_WON, side) && System.nanoTime() - appendedAt >= commitNanos) {
+                flush();
+            }
+        }
+
+        @Override
+        public void tournamentWon(int side) {
+            if (tag(TOURNAMENT_WON, side)) {
+                flush();
+            }
+        }
+
+        // Appends everything recorded so far to the journal.
+        @Override
+        public void flush() {
+            if (length > 0) {
+                append(id, block, length);
+                length = 0;
+            }
+            appendedAt = System.nanoTime();
+        }
+
+        // Starts a record; false if no tournament has started, in which case the event is not journaled.
+        private boolean tag(int kind, int side) {
+            if (id < 0) {
+                return false;
+            }
+            reserve(12);
+            block[length++] = (byte) (kind << 1 | side);
+            return true;
+        }
+
+        private void reserve(int bytes) {
+            if (length + bytes > block.length) {
+                flush();
+                if (bytes > block.length) {
+                    block = new byte[bytes];
+                }
+            }
+        }
+
+        private void putVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                block[length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            block[length++] = (byte) value;
+        }
+    }
+
+    private void append(long id, byte[] records, int recordLength) {
+        while (true) {
+            Segment segment = current;
+            long delta = zigzag(id - segment.baseId);
+            int idLength = varintLength(delta);
+            int bodyLength = idLength + recordLength;
+            if (4L + bodyLength > segmentBytes - HEADER) {
+                throw new IllegalStateException("Block of " + bodyLength + " bytes does not fit in a segment");
+            }
+            long size = blockSize(bodyLength);
+            long position = segment.next.getAndAdd(size);
+            ByteBuffer buffer = segment.buffer;
+            if (position + size > buffer.capacity()) {
+                if (position + 4 <= buffer.capacity()) {
+                    LENGTH.setRelease(buffer, (int) position, END_OF_SEGMENT); // the first block that does not fit
+                }
+                rollOver(segment);
+                continue;
+            }
+            LENGTH.setRelease(buffer, (int) position, -bodyLength);
+            int at = (int) position + 4;
+            for (long value = delta; ; value >>>= 7) {
+                if ((value & ~0x7FL) == 0) {
+                    buffer.put(at++, (byte) value);
+                    break;
+                }
+                buffer.put(at++, (byte) (value & 0x7F | 0x80));
+            }
+            buffer.put(at, records, 0, recordLength);
+            LENGTH.setRelease(buffer, (int) position, bodyLength);
+            return;
+        }
+    }
+
+    private synchronized void rollOver(Segment full) {
+        if (current != full) {
+            return; // another writer got here first
+        }
+        try {
+            current = newSegment(tournamentIds.get());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start a new journal segment in " + directory, e);
+        }
+        retired.add(full);
+    }
+
+    private Segment newSegment(long baseId) throws IOException {
+        int number = 1;
+        try (Stream<Path> files = Files.list(directory)) {
+            number += files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches(SEGMENT_NAME))
+                    .mapToInt(name -> Integer.parseInt(name.substring(8, 16)))
+                    .max().orElse(0);
+        }
+        while (true) {
+            Path file = directory.resolve(String.format("journal-%08d.dtj", number));
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                number++; // another process took this number
+                continue;
+            }
+            try {
+                channel.lock(); // before the header, so a segment with a header but no lock has been given up
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+                // A new journal numbers its tournaments from its first segment, so ids stay unique across runs.
+                long base = baseId >= 0 ? baseId : (long) number << 32;
+                buffer.putInt(0, MAGIC).putLong(4, base);
+                return new Segment(file, channel, buffer, base);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    // Shrinks each segment that no open journal holds to the blocks it contains, or deletes it if it has none.
+    private void retireIdleSegments() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> file.getFileName().toString().matches(SEGMENT_NAME)).toList();
+        }
+        for (Path file : segments) {
+            boolean empty = false;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    continue; // another process is writing to it
+                }
+                ByteBuffer word = ByteBuffer.allocate(4);
+                if (channel.read(word, 0) < 4 || word.getInt(0) != MAGIC) {
+                    continue; // not a journal segment, or one whose writer has yet to lock it
+                }
+                long size = channel.size();
+                long position = HEADER;
+                while (position + 4 <= size) {
+                    word.clear();
+                    channel.read(word, position);
+                    int length = word.getInt(0);
+                    if (length == 0 || length == END_OF_SEGMENT || position + 4L + Math.abs(length) > size) {
+                        break;
+                    }
+                    position += blockSize(Math.abs(length));
+                }
+                empty = position == HEADER;
+                if (!empty && position < size) {
+                    channel.truncate(position);
+                }
+            } catch (OverlappingFileLockException e) {
+                continue; // a journal in this JVM is writing to it
+            }
+            if (empty) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(commitNanos / 1_000_000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+            commit();
+        }
+    }
+
+    // Forces to disk every block appended so far, up to the first one still being written in each segment. A rolled
+    // over segment is let go once all its blocks are written and committed.
+    public synchronized void commit() {
+        for (Iterator<Segment> segments = retired.iterator(); segments.hasNext(); ) {
+            Segment segment = segments.next();
+            if (force(segment)) {
+                closeQuietly(segment);
+                segments.remove();
+            }
+        }
+        force(current);
+    }
+
+    // Returns whether the segment is complete and committed in full.
+    private static boolean force(Segment segment) {
+        boolean complete = segment.publish();
+        if (segment.published > segment.committed) {
+            segment.buffer.force(segment.committed, segment.published - segment.committed);
+            segment.committed = segment.published;
+        }
+        return complete;
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close(); // releases the lock; the mapping stays valid
+        } catch (IOException e) {
+            // nothing is lost: the lock goes with the process in any case
+        }
+    }
+
+    // Stops the committer and commits. Recorders still in use must be flushed first.
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            committer.interrupt();
+            commit();
+            retired.forEach(GameJournal::closeQuietly);
+            closeQuietly(current);
+        }
+    }
+
+    static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    // Bytes a block with a body of the given length takes, with its length and padding.
+    private static int blockSize(int bodyLength) {
+        return (4 + bodyLength + 3) & ~3;
+    }
+
+    private static int varintLength(long value) {
+        return Math.max(1, (bitWidth(value) + 6) / 7);
+    }
+
+    private static int bitWidth(long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    // Rebuilds tournaments from a journal by playing its records through Tournament, which also checks that every move
+    // was legal and every result is the one the moves produce.
+    public static final class Replay {
+        private final Map<Long, Replayed> tournaments = new HashMap<>();
+        private final long watch;  // id whose events are printed, or -1
+        private long moves;
+        private long rounds;
+        private long started;
+        private long finished;
+        private long blocks;
+        private long unfinished;   // blocks skipped because their writer died before finishing them
+        private long bytes;
+        private int at;            // read position in the current block
+
+        // One tournament as far as the journal goes.
+        public static final class Replayed {
+            final long id;
+            final Tournament tournament;
+            final int pileBits;
+
+            Replayed(long id, Tournament tournament) {
+                this.id = id;
+                this.tournament = tournament;
+                this.pileBits = bitWidth(tournament.engine().pileCount() - 1);
+            }
+        }
+
+        public Replay(long watch) {
+            this.watch = watch;
+        }
+
+        public Replayed tournament(long id) {
+            return tournaments.get(id);
+        }
+
+        // Replays the segments of the directory in order.
+        public void replayDirectory(Path directory) throws IOException {
+            List<Path> segments;
+            try (Stream<Path> files = Files.list(directory)) {
+                segments = files.filter(file -> file.getFileName().toString().matches(SEGMENT_NAME))
+                        .sorted().toList();
+            }
+            for (Path segment : segments) {
+                replaySegment(segment);
+            }
+        }
+
+        public void replaySegment(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a journal segment: " + file);
+                }
+                long base = buffer.getLong(4);
+                int position = HEADER;
+                while (position + 4 <= buffer.capacity()) {
+                    int length = buffer.getInt(position);
+                    if (length == 0 || length == END_OF_SEGMENT
+                            || position + 4L + Math.abs(length) > buffer.capacity()) {
+                        break; // end of the segment
+                    }
+                    if (length > 0) {
+                        replayBlock(buffer, base, position + 4, position + 4 + length);
+                    } else {
+                        unfinished++;
+                    }
+                    position += blockSize(Math.abs(length));
+                }
+                bytes += position;
+            }
+        }
+
+        private void replayBlock(ByteBuffer buffer, long base, int at, int end) {
+            blocks++;
+            this.at = at;
+            long id = base + unzigzag(readVarint(buffer));
+            Replayed replayed = tournaments.get(id);
+            while (this.at < end) {
+                int tag = buffer.get(this.at++);
+                int kind = tag >>> 1;
+                int side = tag & 1;
+                if (kind == TOURNAMENT) {
+                    long roundsNeeded = readVarint(buffer);
+                    byte[] code = new byte[(int) readVarint(buffer)];
+                    buffer.get(this.at, code);
+                    this.at += code.length;
+                    long[] piles = new long[(int) readVarint(buffer)];
+                    for (int i = 0; i < piles.length; i++) {
+                        piles[i] = readVarint(buffer);
+                    }
+                    OctalGame rules = OctalGame.parse(new String(code, StandardCharsets.US_ASCII));
+                    long bestOf = roundsNeeded == 0 ? Long.MAX_VALUE : 2 * roundsNeeded - 1;
+                    replayed = new Replayed(id, new Tournament(new NimEngine(rules, piles), bestOf));
+                    replayed.tournament.restart();
+                    tournaments.put(id, replayed);
+                    started++;
+                    print(id, "tournament " + id + ": " + rules + " " + replayed.tournament.engine()
+                            + (roundsNeeded == 0 ? ", open-ended" : ", first to " + roundsNeeded + " rounds"));
+                    continue;
+                }
+                if (replayed == null) {
+                    throw new IllegalStateException("Records for tournament " + id + " before its start");
+                }
+                Tournament tournament = replayed.tournament;
+                switch (kind) {
+                    case ROUND -> {
+                        if (tournament.phase() == Tournament.Phase.ROUND_OVER) {
+                            tournament.nextRound();
+                        } else if (tournament.phase() == Tournament.Phase.TURN) {
+                            tournament.abandonRound();
+                            print(id, "  round abandoned");
+                        }
+                        tournament.startRound(side);
+                        print(id, "round " + (tournament.roundsPlayed() + 1) + ", " + sideName(side) + " first");
+                    }
+                    case MOVE -> {
+                        long packed = readVarint(buffer);
+                        int pile = (int) (packed & ((1L << replayed.pileBits) - 1));
+                        long count = packed >>> replayed.pileBits;
+                        if (tournament.phase() != Tournament.Phase.TURN || tournament.toMove() != side
+                                || !tournament.play(NimEngine.move(pile, count))) {
+                            throw new IllegalStateException("Tournament " + id + ": impossible move of " + count
+                                    + " from pile " + pile + " by " + sideName(side));
+                        }
+                        moves++;
+                        print(id, "  " + sideName(side) + " takes " + count + " from pile " + pile + " -> "
+                                + tournament.engine());
+                    }
+                    case ROUND_WON -> {
+                        if (tournament.roundWinner() != side) {
+                            throw new IllegalStateException("Tournament " + id + ": round result does not match");
+                        }
+                        rounds++;
+                        print(id, "  " + sideName(side) + " wins the round, " + tournament.wins(Tournament.PLAYER)
+                                + "-" + tournament.wins(Tournament.COMPUTER));
+                    }
+                    case TOURNAMENT_WON -> {
+                        tournament.nextRound();
+                        if (tournament.tournamentWinner() != side) {
+                            throw new IllegalStateException("Tournament " + id + ": result does not match");
+                        }
+                        finished++;
+                        print(id, sideName(side) + " wins the tournament");
+                        if (id != watch) {
+                            tournaments.remove(id); // nothing more can happen to it
+                        }
+                    }
+                    default -> throw new IllegalStateException("Unknown record " + kind + " in tournament " + id);
+                }
+            }
+        }
+
+        private void print(long id, String line) {
+            if (id == watch) {
+                System.out.println(line);
+            }
+        }
+
+        private long readVarint(ByteBuffer buffer) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(at++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private static String sideName(int side) {
+            return side == Tournament.PLAYER ? "player" : "computer";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("replay")) {
+            Replay replay = new Replay(args.length > 2 ? Long.parseLong(args[2]) : -1);
+            long start = System.nanoTime();
+            replay.replayDirectory(Path.of(args[1]));
+            reportReplay(replay, (System.nanoTime() - start) / 1e9);
+            if (args.length > 2) {
+                Replay.Replayed replayed = replay.tournament(Long.parseLong(args[2]));
+                if (replayed == null) {
+                    System.out.println("No tournament " + args[2] + " in the journal");
+                } else {
+                    Tournament tournament = replayed.tournament;
+                    System.out.printf("tournament %d: %s, position %s, score %d-%d%n", replayed.id, tournament.phase(),
+                            tournament.engine(), tournament.wins(Tournament.PLAYER), tournament.wins(Tournament.COMPUTER));
+                }
+            }
+        } else if (args.length >= 1 && args[0].equals("bench")) {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            long bestOf = args.length > 2 ? Long.parseLong(args[2]) : 1_000_001L;
+            bench(threads, bestOf);
+        } else {
+            System.out.println("Usage: java GameJournal replay <directory> [tournamentId]");
+            System.out.println("       java GameJournal bench [threads] [bestOfRounds]");
+        }
+    }
+
+    // Plays one tournament per thread into a fresh journal, then replays it.
+    private static void bench(int threads, long bestOf) throws Exception {
+        Path directory = Files.createTempDirectory("doubletrouble-journal-bench");
+        try {
+            long[] moves = new long[threads];
+            long start = System.nanoTime();
+            try (GameJournal journal = new GameJournal(directory, 64, 10)) {
+                Thread[] players = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    int seat = t;
+                    players[t] = new Thread(() -> {
+                        SplittableRandom random = new SplittableRandom(seat);
+                        ToLongFunction<NimEngine> randomPlayer = engine -> engine.takeOneMove(random);
+                        ToLongFunction<NimEngine> strategy = engine -> {
+                            long move = engine.winningMove();
+                            return move != NimEngine.NO_MOVE ? move : engine.takeOneMove(random);
+                        };
+                        Tournament tournament = new Tournament(new NimEngine(), bestOf);
+                        tournament.setEventSink(journal.recorder(tournament.engine()));
+                        tournament.restart();
+                        tournament.playOut(randomPlayer, strategy);
+                        moves[seat] = tournament.movesPlayed();
+                    });
+                    players[t].start();
+                }
+                for (Thread player : players) {
+                    player.join();
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long totalMoves = Arrays.stream(moves).sum();
+            System.out.printf("Recorded %,d moves from %d threads in %.2f s: %,.0f moves/sec%n",
+                    totalMoves, threads, seconds, totalMoves / seconds);
+
+            Replay replay = new Replay(-1);
+            start = System.nanoTime();
+            replay.replayDirectory(directory);
+            reportReplay(replay, (System.nanoTime() - start) / 1e9);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void reportReplay(Replay replay, double seconds) {
+        System.out.printf("Replayed %,d tournaments (%,d finished), %,d rounds and %,d moves from %,d blocks, %,d bytes "
+                        + "(%.2f per move), in %.2f s: %,.0f moves/sec%n", replay.started, replay.finished, replay.rounds,
+                replay.moves, replay.blocks, replay.bytes, (double) replay.bytes / Math.max(1, replay.moves), seconds,
+                replay.moves / seconds);
+        if (replay.unfinished > 0) {
+            System.out.printf("Skipped %,d blocks whose writers did not finish them%n", replay.unfinished);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Headless HTTP service for Double Trouble tournaments, so one process can host thousands of players instead of one
+// JFrame each. Built on the JDK's com.sun.net.httpserver with one virtual thread per request; each session is a
+// Tournament behind a ReentrantLock (virtual threads must not block while holding a monitor) in a concurrent table,
+// and sessions nobody has touched for a while are evicted.
+//
+// Endpoints (parameters in the query string, responses in JSON):
+//   POST   /tournaments?bestOf=3&variant=nim&piles=3,7,5&first=player   start a tournament
+//   GET    /tournaments/{id}                                             current state
+//   POST   /tournaments/{id}/moves?pile=1&count=2                       play a move; the reply includes the computer's
+//   DELETE /tournaments/{id}                                             end the session
+// bestOf is at most 1001, and the starting piles must allow a move. Piles are numbered from 0. When a round ends the
+// next one starts at once, with the loser of the last round to move, and if that is the computer its opening move is
+// part of the same reply.
+//
+// Usage: java GameServer [port] [idleTimeoutSeconds]
+public final class GameServer {
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's algorithm on, every response then waits out
+        // the client's delayed ACK (~40 ms). Must be set before the server classes load.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        // It also closes all but 200 idle keep-alive connections, and a client that then reuses one of those for a POST
+        // gets no response and does not retry
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+        }
+    }
+
+    private static final int MAX_SESSIONS = 1_000_000;
+    private static final int MAX_PILES = 64;
+    private static final long MAX_BEST_OF = 1001;
+
+    private final HttpServer server;
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<OctalGame, Optional<Tablebase>> tablebases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private final long idleTimeoutNanos;
+    private final SecureRandom ids = new SecureRandom();
+
+    // One player's tournament. Every access holds the lock.
+    private static final class Session {
+        final String id;
+        final Tournament tournament;
+        final Tablebase tablebase;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastAccess = System.nanoTime();
+
+        Session(String id, Tournament tournament, Tablebase tablebase) {
+            this.id = id;
+            this.tournament = tournament;
+            this.tablebase = tablebase;
+        }
+    }
+
+    // Thrown by request handling to answer with an error status.
+    private static final class RequestException extends Exception {
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public GameServer(int port, long idleTimeoutSeconds) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/tournaments", this::handle);
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweep = Math.max(1, idleTimeoutSeconds / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdleSessions, sweep, sweep, TimeUnit.SECONDS);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        evictor.shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    private void evictIdleSessions() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> now - session.lastAccess > idleTimeoutNanos);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes(); // parameters come in the query string; drain the body so the connection can be reused
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            String response;
+            try {
+                if (path.length == 2 && method.equals("POST")) {
+                    response = create(query);
+                } else if (path.length == 3 && method.equals("GET")) {
+                    response = withSession(path[2], session -> state(session, NimEngine.NO_MOVE, -1));
+                } else if (path.length == 3 && method.equals("DELETE")) {
+                    sessions.remove(path[2]);
+                    response = "{}";
+                } else if (path.length == 4 && path[3].equals("moves") && method.equals("POST")) {
+                    response = withSession(path[2], session -> move(session, query));
+                } else {
+                    throw new RequestException(404, "No such endpoint");
+                }
+                send(exchange, 200, response);
+            } catch (RequestException e) {
+                send(exchange, e.status, "{\"error\":\"" + e.getMessage().replace("\"", "'") + "\"}");
+            } catch (RuntimeException e) {
+                send(exchange, 400, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
+            }
+        }
+    }
+
+    private String create(Map<String, String> query) throws RequestException {
+        if (sessions.size() >= MAX_SESSIONS) {
+            throw new RequestException(503, "Too many sessions");
+        }
+        OctalGame rules = OctalGame.parse(query.getOrDefault("variant", "nim"));
+        long[] piles = NimEngine.parsePiles(query.getOrDefault("piles", "3,7,5"));
+        if (piles.length > MAX_PILES) {
+            throw new RequestException(400, "At most " + MAX_PILES + " piles");
+        }
+        long bestOf = Long.parseLong(query.getOrDefault("bestOf", "3"));
+        if (bestOf < 1 || bestOf > MAX_BEST_OF) {
+            throw new RequestException(400, "bestOf must be between 1 and " + MAX_BEST_OF);
+        }
+        int first = switch (query.getOrDefault("first", "player")) {
+            case "player" -> Tournament.PLAYER;
+            case "computer" -> Tournament.COMPUTER;
+            default -> throw new RequestException(400, "first must be player or computer");
+        };
+        NimEngine engine = new NimEngine(rules, piles);
+        if (engine.isGameOver()) {
+            // Every round would end before a move, so reply() would only start round after round
+            throw new RequestException(400, "The starting position has no legal moves");
+        }
+        Tablebase tablebase = piles.length == 3
+                ? tablebases.computeIfAbsent(rules, r -> Optional.ofNullable(Tablebase.forStandardGame(r))).orElse(null)
+                : null;
+        Session session = new Session(newId(), new Tournament(engine, bestOf), tablebase);
+        sessions.put(session.id, session);
+        return withSession(session.id, s -> {
+            s.tournament.startRound(first);
+            return reply(s);
+        });
+    }
+
+    private String move(Session session, Map<String, String> query) throws RequestException {
+        Tournament tournament = session.tournament;
+        if (tournament.phase() != Tournament.Phase.TURN || tournament.toMove() != Tournament.PLAYER) {
+            throw new RequestException(409, "It is not the player's turn");
+        }
+        int pile = Integer.parseInt(required(query, "pile"));
+        long count = Long.parseLong(required(query, "count"));
+        if (!tournament.engine().isLegal(pile, count) || !tournament.play(NimEngine.move(pile, count))) {
+            throw new RequestException(400, "Illegal move");
+        }
+        return reply(session);
+    }
+
+    // Plays the computer's moves until it is the player's turn or the tournament is over, starting new rounds as they
+    // end, and describes the result.
+    private String reply(Session session) {
+        Tournament tournament = session.tournament;
+        long computerMove = NimEngine.NO_MOVE;
+        int roundWinner = -1;
+        while (true) {
+            if (tournament.phase() == Tournament.Phase.ROUND_OVER) {
+                roundWinner = tournament.roundWinner();
+                tournament.nextRound();
+                if (tournament.phase() == Tournament.Phase.ROUND_START) {
+                    tournament.startRound(1 - roundWinner);
+                }
+            } else if (tournament.phase() == Tournament.Phase.TURN && tournament.toMove() == Tournament.COMPUTER) {
+                computerMove = computerMove(session);
+                tournament.play(computerMove);
+            } else {
+                return state(session, computerMove, roundWinner);
+            }
+        }
+    }
+
+    // DoubleTroubleGame's strategy: the tablebase's best move, else the winning move, else one marker at random.
+    private static long computerMove(Session session) {
+        NimEngine engine = session.tournament.engine();
+        long move = session.tablebase != null ? session.tablebase.bestMove(engine) : NimEngine.NO_MOVE;
+        if (move == NimEngine.NO_MOVE) {
+            move = engine.winningMove();
+        }
+        return move != NimEngine.NO_MOVE ? move : engine.takeOneMove(ThreadLocalRandom.current());
+    }
+
+    private static String state(Session session, long computerMove, int roundWinner) {
+        Tournament tournament = session.tournament;
+        NimEngine engine = tournament.engine();
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"session\":\"").append(session.id)
+                .append("\",\"phase\":\"").append(tournament.phase())
+                .append("\",\"toMove\":\"").append(side(tournament.toMove()))
+                .append("\",\"piles\":[");
+        for (int i = 0; i < engine.pileCount(); i++) {
+            json.append(i == 0 ? "" : ",").append(engine.pile(i));
+        }
+        json.append("],\"wins\":{\"player\":").append(tournament.wins(Tournament.PLAYER))
+                .append(",\"computer\":").append(tournament.wins(Tournament.COMPUTER)).append('}');
+        if (computerMove != NimEngine.NO_MOVE) {
+            json.append(",\"computerMove\":{\"pile\":").append(NimEngine.movePile(computerMove))
+                    .append(",\"count\":").append(NimEngine.moveCount(computerMove)).append('}');
+        }
+        if (roundWinner >= 0) {
+            json.append(",\"roundWinner\":\"").append(side(roundWinner)).append('"');
+        }
+        if (tournament.tournamentWinner() >= 0) {
+            json.append(",\"tournamentWinner\":\"").append(side(tournament.tournamentWinner())).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    private static String side(int side) {
+        return side == Tournament.PLAYER ? "player" : "computer";
+    }
+
+    private interface SessionAction {
+        String apply(Session session) throws RequestException;
+    }
+
+    private String withSession(String id, SessionAction action) throws RequestException {
+        Session session = sessions.get(id);
+        if (session == null) {
+            throw new RequestException(404, "No such session");
+        }
+        session.lock.lock();
+        try {
+            session.lastAccess = System.nanoTime();
+            return action.apply(session);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private String newId() {
+        return Long.toUnsignedString(ids.nextLong(), 36);
+    }
+
+    private static String required(Map<String, String> query, String name) throws RequestException {
+        String value = query.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        long idleTimeout = args.length > 1 ? Long.parseLong(args[1]) : 600;
+        GameServer server = new GameServer(port, idleTimeout);
+        server.start();
+        System.out.printf("Double Trouble server on port %d, sessions evicted after %d s idle%n", server.port(),
+                idleTimeout);
+    }
+}
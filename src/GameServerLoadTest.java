@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Load generator for GameServer: every simulated player gets a virtual thread that starts a tournament and keeps
+// playing random legal moves, timing each request (at most 2,000 at a time), and the run reports throughput and latency percentiles.
+// Without a URL it starts a server in-process on a free port. Before the load it checks that requests the server must
+// refuse, such as a tournament of a million rounds from empty piles, get a 400 at once rather than tying up a session.
+//
+// Usage: java GameServerLoadTest [sessions] [requestsPerSession] [baseUrl, e.g. http://localhost:8080]
+public final class GameServerLoadTest {
+
+    private static final Pattern PILES = Pattern.compile("\"piles\":\\[([0-9,]*)]");
+    private static final int MAX_IN_FLIGHT = 2_000;
+    private static final Pattern SESSION = Pattern.compile("\"session\":\"([0-9a-z]+)\"");
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final AtomicLong errors = new AtomicLong();
+    // Each request in flight holds a socket at both ends when the server is in-process, so all sessions at once would
+    // run out of file descriptors long before the server runs out of anything else
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+    GameServerLoadTest(String baseUrl, ExecutorService executor) {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+    }
+
+    // Plays one session and returns the latency of each request in nanoseconds.
+    long[] runSession(int requests, long seed) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] latencies = new long[requests];
+        String state = post("/tournaments?bestOf=1001&piles=3,7,5", latencies, 0);
+        String id = match(SESSION, state);
+        for (int i = 1; i < requests && state != null; i++) {
+            long[] piles = NimEngine.parsePiles(match(PILES, state));
+            int pile = random.nextInt(piles.length);
+            while (piles[pile] == 0) {
+                pile = (pile + 1) % piles.length;
+            }
+            long count = 1 + random.nextLong(piles[pile]);
+            state = post("/tournaments/" + id + "/moves?pile=" + pile + "&count=" + count, latencies, i);
+        }
+        return latencies;
+    }
+
+    private String post(String path, long[] latencies, int slot) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        HttpResponse<String> response;
+        inFlight.acquire();
+        try {
+            long start = System.nanoTime();
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            latencies[slot] = System.nanoTime() - start;
+        } finally {
+            inFlight.release();
+        }
+        if (response.statusCode() != 200) {
+            errors.incrementAndGet();
+            return null;
+        }
+        return response.body();
+    }
+
+    // Posts each request that must be refused and counts an error for each that is not answered with a 400 promptly.
+    void checkRejected(String... paths) throws IOException, InterruptedException {
+        for (String path : paths) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(5))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+                if (status != 400) {
+                    System.out.printf("%s: expected 400, got %d%n", path, status);
+                    errors.incrementAndGet();
+                }
+            } catch (HttpTimeoutException e) {
+                System.out.printf("%s: no answer within 5 s%n", path);
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static String match(Pattern pattern, String json) {
+        Matcher matcher = pattern.matcher(json);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Unexpected response " + json);
+        }
+        return matcher.group(1);
+    }
+
+    private static double percentileMillis(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)))] / 1e6;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        GameServer server = null;
+        String baseUrl;
+        if (args.length > 2) {
+            baseUrl = args[2];
+        } else {
+            server = new GameServer(0, 600);
+            server.start();
+            baseUrl = "http://localhost:" + server.port();
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            GameServerLoadTest test = new GameServerLoadTest(baseUrl, executor);
+            test.checkRejected("/tournaments?bestOf=1000000001&piles=0,0,0",
+                    "/tournaments?bestOf=1000001&piles=3,7,5",
+                    "/tournaments?bestOf=0&piles=3,7,5",
+                    "/tournaments?piles=0,0,0");
+            List<Future<long[]>> results = new ArrayList<>(sessions);
+            long start = System.nanoTime();
+            for (int s = 0; s < sessions; s++) {
+                long seed = s;
+                results.add(executor.submit(() -> test.runSession(requests, seed)));
+            }
+            long[] all = new long[sessions * requests];
+            int n = 0;
+            for (Future<long[]> result : results) {
+                for (long latency : result.get()) {
+                    if (latency > 0) {
+                        all[n++] = latency;
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long[] sorted = Arrays.copyOf(all, n);
+            Arrays.sort(sorted);
+            System.out.printf("%,d sessions, %,d requests (%,d errors) in %.2f s: %,.0f requests/sec%n",
+                    sessions, n, test.errors.get(), seconds, n / seconds);
+            System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99), sorted[n - 1] / 1e6);
+            if (server != null) {
+                System.out.printf("%,d sessions live on the server%n", server.sessionCount());
+            }
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
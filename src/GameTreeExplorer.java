@@ -0,0 +1,601 @@
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Analysis window showing the game tree below a position, to explain the computer's choices: every legal move, the
+// nim-sum (Grundy value) of the position it leads to, whether it wins, and which move the computer plays there
+// (Nim.makeWinningMove's choice in a winning position).
+//
+// The tree is never built. A node is materialised only when it is expanded, as a Branch holding its position and an
+// engine, and its children are numbered in the engine's order of piles and removal counts, so the n-th child is found
+// from prefix sums of the piles' move counts without generating the others. Rows are drawn by the window itself rather
+// than by a JTree, whose layout caches hold every visible row and count them in ints: here a row number is a long that
+// is mapped to its node by walking the expanded branches, and only the rows on screen are ever looked at, so a
+// position with three billion-marker piles browses like one with three markers.
+//
+// Row annotations are worked out by one background thread and kept in an LRU cache on the event dispatch thread. Rows
+// not computed yet are painted as placeholders and filled in when ready; each repaint asks only for the visible rows
+// still missing, and a request overtaken by further scrolling is cut short. The EDT therefore never waits on analysis
+// (extending an octal variant's Grundy table, or the tablebase), and memory is bounded by the cache and by the branches
+// the user has opened.
+//
+// Usage: java GameTreeExplorer [variant] [piles]
+public final class GameTreeExplorer extends JFrame {
+
+    private static final int CACHE_ROWS = 4096;
+    private static final int INDENT = 18;
+    private static final int SCROLL_RANGE = 1 << 30; // scroll bar units when the rows outnumber them
+    private static final int MAX_SHOWN_PILES = 8;    // positions with more piles are not spelled out on every row
+    private static final String[] NAMES = {"Green", "Yellow", "Orange"};
+    private static final Color WINNING = new Color(0, 128, 0);
+    private static final Color LOSING = new Color(176, 0, 0);
+    private static final Color SELECTED = new Color(200, 220, 255);
+
+    private final OctalGame rules;
+    private final Tablebase tablebase; // may be null
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "game-tree-explorer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // EDT only.
+    private final Map<Key, Row> cache = new LinkedHashMap<>(CACHE_ROWS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Row> eldest) {
+            return size() > CACHE_ROWS;
+        }
+    };
+    private final Set<Key> pending = new HashSet<>();   // rows requested from the worker and not delivered yet
+    private final Set<Key> expanding = new HashSet<>(); // branches being built by the worker
+    private Branch root;   // null until the worker has analysed the starting position
+    private long top;      // first row on screen
+    private long selected;
+    private int openBranches;
+
+    private volatile long latestRequest; // generation of the newest row request; older ones stop early
+
+    private final TreeView view = new TreeView();
+    private final JScrollBar scrollBar = new JScrollBar(JScrollBar.VERTICAL);
+    private final JLabel statusLabel = new JLabel(" ");
+    private boolean adjusting; // set while the scroll bar is being synchronised with top
+
+    // An expanded node. Its fields other than open and rows are final once built and only its engine is mutable, which
+    // the worker uses to look at children and always restores.
+    private static final class Branch {
+        final Branch parent;
+        final long index;  // child number in the parent
+        final int depth;
+        final long[] piles;
+        final NimEngine engine;
+        final long[] prefix; // prefix[i] = legal moves from piles before i
+        final long nimSum;
+        final long children;
+        final long choice;   // the move the computer plays here, or NO_MOVE
+        final int distance;  // moves to the end with best play, or -1 outside the tablebase
+        final TreeMap<Long, Branch> open = new TreeMap<>(); // EDT only: expanded children by child number
+        long rows;                                          // EDT only: rows shown below this branch
+
+        Branch(Branch parent, long index, OctalGame rules, long[] piles, Tablebase tablebase) {
+            this.parent = parent;
+            this.index = index;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.piles = piles;
+            engine = new NimEngine(rules, piles);
+            prefix = new long[piles.length + 1];
+            for (int i = 0; i < piles.length; i++) {
+                prefix[i + 1] = prefix[i] + rules.legalMoveCount(piles[i]);
+            }
+            nimSum = engine.nimSum();
+            children = engine.legalMoveCount();
+            boolean covered = tablebase != null && tablebase.covers(engine);
+            distance = covered ? tablebase.distance(engine) : -1;
+            // Nim.makeWinningMove in a winning position; in a losing one the tablebase's longest resistance, if any,
+            // as the computer otherwise plays at random
+            long endgame = covered ? tablebase.bestMove(engine) : NimEngine.NO_MOVE;
+            choice = endgame != NimEngine.NO_MOVE ? endgame : engine.winningMove();
+            rows = children;
+        }
+
+        // The child's move: the pile holding move number n, and that pile's move.
+        long move(long n) {
+            int low = 0;
+            int high = piles.length - 1;
+            while (low < high) { // first pile whose moves extend past n
+                int mid = (low + high) >>> 1;
+                if (prefix[mid + 1] > n) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return NimEngine.move(low, engine.rules().nthMove(piles[low], n - prefix[low]));
+        }
+    }
+
+    // A node other than the root: child number child of an expanded branch.
+    private record Key(Branch parent, long child) {
+    }
+
+    // What a row shows about the position after its move.
+    private record Row(long move, long nimSum, long children, int distance) {
+    }
+
+    public GameTreeExplorer(OctalGame rules, long[] piles, Tablebase tablebase) {
+        this.rules = rules;
+        this.tablebase = tablebase;
+        setTitle("Game tree from " + Arrays.toString(piles) + (rules.isNim() ? "" : " (" + rules + ")"));
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        JPanel center = new JPanel(new BorderLayout());
+        center.add(view, BorderLayout.CENTER);
+        center.add(scrollBar, BorderLayout.EAST);
+        add(center, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+        statusLabel.setText("Analysing " + Arrays.toString(piles) + "...");
+        scrollBar.addAdjustmentListener(e -> {
+            if (!adjusting) {
+                scrollTo(fromScrollBar(e.getValue()));
+            }
+        });
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                worker.shutdownNow();
+            }
+        });
+        pack();
+        setLocationByPlatform(true);
+
+        long[] start = piles.clone();
+        worker.execute(() -> {
+            Branch branch = new Branch(null, 0, rules, start, tablebase);
+            SwingUtilities.invokeLater(() -> {
+                root = branch;
+                openBranches = 1;
+                changed();
+            });
+        });
+    }
+
+    private long rowCount() {
+        return root == null ? 0 : 1 + root.rows;
+    }
+
+    // The node shown on a row: null for the root (row 0).
+    private Key nodeAt(long row) {
+        if (row == 0) {
+            return null;
+        }
+        Branch branch = root;
+        long r = row - 1; // row among the branch's descendants
+        while (true) {
+            long skipped = 0; // rows of open children above the row
+            Branch into = null;
+            for (Map.Entry<Long, Branch> entry : branch.open.entrySet()) {
+                long childRow = entry.getKey() + skipped;
+                if (r <= childRow) {
+                    break;
+                }
+                long inside = r - childRow - 1;
+                if (inside < entry.getValue().rows) {
+                    into = entry.getValue();
+                    r = inside;
+                    break;
+                }
+                skipped += entry.getValue().rows;
+            }
+            if (into == null) {
+                return new Key(branch, r - skipped);
+            }
+            branch = into;
+        }
+    }
+
+    // The row a branch is shown on.
+    private long rowOf(Branch branch) {
+        if (branch.parent == null) {
+            return 0;
+        }
+        long row = rowOf(branch.parent) + 1 + branch.index;
+        for (Branch sibling : branch.parent.open.headMap(branch.index).values()) {
+            row += sibling.rows;
+        }
+        return row;
+    }
+
+    // Expands a collapsed row or collapses an expanded one; the branch is built in the background.
+    private void toggle(long row) {
+        Key key = nodeAt(row);
+        if (key == null || expanding.contains(key)) {
+            return;
+        }
+        Branch open = key.parent().open.get(key.child());
+        if (open != null) {
+            key.parent().open.remove(key.child());
+            openBranches -= countBranches(open);
+            resize(key.parent(), -open.rows);
+            changed();
+            return;
+        }
+        Row data = cache.get(key);
+        if (data != null && data.children() == 0) {
+            return;
+        }
+        expanding.add(key);
+        view.repaintRow(row);
+        Branch parent = key.parent();
+        worker.execute(() -> {
+            long move = parent.move(key.child());
+            long[] piles = parent.piles.clone();
+            piles[NimEngine.movePile(move)] -= NimEngine.moveCount(move);
+            Branch branch = new Branch(parent, key.child(), rules, piles, tablebase);
+            SwingUtilities.invokeLater(() -> {
+                expanding.remove(key);
+                if (attached(parent)) {
+                    parent.open.put(key.child(), branch);
+                    openBranches++;
+                    resize(parent, branch.rows);
+                }
+                changed();
+            });
+        });
+    }
+
+    // Whether a branch is still part of the tree, rather than inside one collapsed since.
+    private boolean attached(Branch branch) {
+        for (; branch.parent != null; branch = branch.parent) {
+            if (branch.parent.open.get(branch.index) != branch) {
+                return false;
+            }
+        }
+        return branch == root;
+    }
+
+    private static int countBranches(Branch branch) {
+        int count = 1;
+        for (Branch child : branch.open.values()) {
+            count += countBranches(child);
+        }
+        return count;
+    }
+
+    // Adds delta rows to a branch and every branch above it.
+    private static void resize(Branch branch, long delta) {
+        for (; branch != null; branch = branch.parent) {
+            branch.rows += delta;
+        }
+    }
+
+    // Asks the worker for the rows the view found missing. A newer request makes this one stop at its next row; the
+    // rows it did compute are delivered either way, and the rest are asked for again if they are still on screen.
+    private void request(List<Key> missing) {
+        if (worker.isShutdown()) {
+            return;
+        }
+        pending.addAll(missing);
+        long generation = ++latestRequest;
+        worker.execute(() -> {
+            List<Row> rows = new ArrayList<>(missing.size());
+            for (Key key : missing) {
+                if (latestRequest != generation) {
+                    break;
+                }
+                rows.add(analyse(key));
+            }
+            SwingUtilities.invokeLater(() -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    cache.put(missing.get(i), rows.get(i));
+                }
+                missing.forEach(pending::remove);
+                view.repaint();
+                showStatus();
+            });
+        });
+    }
+
+    // Worker thread only: plays the row's move on its branch's engine and takes it back.
+    private Row analyse(Key key) {
+        Branch parent = key.parent();
+        NimEngine engine = parent.engine;
+        long move = parent.move(key.child());
+        engine.apply(move);
+        int distance = tablebase != null && tablebase.covers(engine) ? tablebase.distance(engine) : -1;
+        Row row = new Row(move, engine.nimSum(), engine.legalMoveCount(), distance);
+        engine.undo(move);
+        return row;
+    }
+
+    private void scrollTo(long row) {
+        top = Math.max(0, Math.min(row, rowCount() - view.visibleRows()));
+        syncScrollBar();
+        view.repaint();
+    }
+
+    // Moves the selection, scrolling to keep it on screen.
+    private void select(long row) {
+        long last = rowCount() - 1;
+        row = Math.max(0, Math.min(row, last));
+        view.repaintRow(selected);
+        selected = row;
+        view.repaintRow(selected);
+        int visible = view.visibleRows();
+        if (row < top) {
+            scrollTo(row);
+        } else if (row >= top + visible) {
+            scrollTo(row - visible + 1);
+        }
+    }
+
+    // After the row count changed.
+    private void changed() {
+        selected = Math.min(selected, Math.max(0, rowCount() - 1));
+        scrollTo(top);
+        showStatus();
+    }
+
+    private void showStatus() {
+        statusLabel.setText(String.format("%,d rows shown, %,d branches open, %,d rows cached",
+                rowCount(), openBranches, cache.size()));
+    }
+
+    private void syncScrollBar() {
+        long rows = rowCount();
+        long extent = Math.min(view.visibleRows(), rows);
+        adjusting = true;
+        if (rows <= SCROLL_RANGE) {
+            scrollBar.setValues((int) top, (int) extent, 0, (int) rows);
+            scrollBar.setBlockIncrement((int) Math.max(1, extent - 1));
+        } else {
+            int scaled = (int) Math.max(1, extent * SCROLL_RANGE / rows);
+            scrollBar.setValues((int) (top / (double) rows * SCROLL_RANGE), scaled, 0, SCROLL_RANGE);
+            scrollBar.setBlockIncrement(scaled);
+        }
+        adjusting = false;
+    }
+
+    private long fromScrollBar(int value) {
+        long rows = rowCount();
+        return rows <= SCROLL_RANGE ? value : (long) (value / (double) SCROLL_RANGE * rows);
+    }
+
+    private String pileName(int pile) {
+        return root.piles.length == NAMES.length ? NAMES[pile] : "pile " + (pile + 1);
+    }
+
+    private static String distanceText(int distance) {
+        if (distance < 0) {
+            return "";
+        }
+        return ", ends in " + distance + (distance == Tablebase.MAX_DISTANCE ? "+" : "") + " moves";
+    }
+
+    // Paints the rows on screen, and nothing but them.
+    private final class TreeView extends JComponent {
+
+        TreeView() {
+            setPreferredSize(new Dimension(640, 480));
+            setFocusable(true);
+            setOpaque(true);
+            setBackground(Color.WHITE);
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    requestFocusInWindow();
+                    long row = top + e.getY() / rowHeight();
+                    if (row >= rowCount()) {
+                        return;
+                    }
+                    select(row);
+                    if (e.getClickCount() == 2 || e.getX() < indent(row)) { // on the toggle, left of the text
+                        toggle(row);
+                    }
+                }
+
+                @Override
+                public void mouseWheelMoved(MouseWheelEvent e) {
+                    scrollTo(top + e.getWheelRotation() * 3L);
+                }
+            };
+            addMouseListener(mouse);
+            addMouseWheelListener(mouse);
+            bind("UP", () -> select(selected - 1));
+            bind("DOWN", () -> select(selected + 1));
+            bind("PAGE_UP", () -> select(selected - visibleRows() + 1));
+            bind("PAGE_DOWN", () -> select(selected + visibleRows() - 1));
+            bind("HOME", () -> select(0));
+            bind("END", () -> select(rowCount() - 1));
+            bind("ENTER", () -> toggle(selected));
+            bind("RIGHT", () -> {
+                Key key = nodeAt(selected);
+                if (key != null && !key.parent().open.containsKey(key.child())) {
+                    toggle(selected);
+                }
+            });
+            bind("LEFT", () -> { // collapse, or go up to the parent
+                Key key = nodeAt(selected);
+                if (key == null) {
+                    return;
+                }
+                if (key.parent().open.containsKey(key.child())) {
+                    toggle(selected);
+                } else {
+                    select(rowOf(key.parent()));
+                }
+            });
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    scrollTo(top);
+                }
+            });
+        }
+
+        private void bind(String key, Runnable action) {
+            getInputMap().put(KeyStroke.getKeyStroke(key), key);
+            getActionMap().put(key, new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    if (root != null) {
+                        action.run();
+                    }
+                }
+            });
+        }
+
+        int rowHeight() {
+            return getFontMetrics(getFont()).getHeight() + 4;
+        }
+
+        int visibleRows() {
+            return Math.max(1, getHeight() / rowHeight());
+        }
+
+        void repaintRow(long row) {
+            if (row >= top && row - top < visibleRows() + 1) {
+                int h = rowHeight();
+                repaint(0, (int) (row - top) * h, getWidth(), h);
+            }
+        }
+
+        private int indent(long row) {
+            Key key = nodeAt(row);
+            return 4 + (key == null ? 0 : (key.parent().depth + 1) * INDENT);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Rectangle clip = g.getClipBounds();
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            if (root == null) {
+                return;
+            }
+            FontMetrics metrics = g.getFontMetrics(getFont());
+            int h = rowHeight();
+            long first = top + clip.y / h;
+            long last = Math.min(rowCount() - 1, top + (clip.y + clip.height - 1) / h);
+            List<Key> missing = new ArrayList<>();
+            for (long row = first; row <= last; row++) {
+                int y = (int) (row - top) * h;
+                if (row == selected) {
+                    g.setColor(hasFocus() ? SELECTED : SELECTED.brighter());
+                    g.fillRect(0, y, getWidth(), h);
+                }
+                Key key = nodeAt(row);
+                int x = 4 + (key == null ? 0 : (key.parent().depth + 1) * INDENT);
+                int baseline = y + 2 + metrics.getAscent();
+                if (key == null) { // the root is always expanded
+                    paintRoot(g, x, baseline);
+                    continue;
+                }
+                Row data = cache.get(key);
+                if (data == null) {
+                    if (!pending.contains(key)) {
+                        missing.add(key);
+                    }
+                    g.setColor(Color.GRAY);
+                    g.drawString("move " + (key.child() + 1) + " ...", x, baseline);
+                    continue;
+                }
+                if (data.children() > 0) {
+                    drawToggle(g, x - INDENT + 4, y, h, key.parent().open.containsKey(key.child()));
+                }
+                paintRow(g, metrics, key, data, x, baseline);
+            }
+            if (!missing.isEmpty()) {
+                request(missing);
+            }
+        }
+
+        private void paintRoot(Graphics g, int x, int baseline) {
+            g.setColor(root.nimSum != 0 ? WINNING : LOSING);
+            g.drawString("Position " + Arrays.toString(root.piles) + ", nim-sum " + root.nimSum + ": the player to move "
+                    + (root.nimSum != 0 ? "wins" : "loses") + ", " + String.format("%,d", root.children) + " moves"
+                    + distanceText(root.distance), x, baseline);
+        }
+
+        private void paintRow(Graphics g, FontMetrics metrics, Key key, Row data, int x, int baseline) {
+            int pile = NimEngine.movePile(data.move());
+            long count = NimEngine.moveCount(data.move());
+            StringBuilder text = new StringBuilder("take ").append(count).append(" from ").append(pileName(pile));
+            Branch parent = key.parent();
+            if (parent.piles.length <= MAX_SHOWN_PILES) {
+                long[] after = parent.piles.clone();
+                after[pile] -= count;
+                text.append(" -> ").append(Arrays.toString(after));
+            }
+            g.setColor(Color.BLACK);
+            g.drawString(text.toString(), x, baseline);
+            x += metrics.stringWidth(text.toString()) + 12;
+
+            // A move is winning when it leaves the opponent a zero nim-sum
+            boolean winning = data.nimSum() == 0;
+            String verdict = (winning ? "wins" : "loses") + " (nim-sum " + data.nimSum() + ")";
+            g.setColor(winning ? WINNING : LOSING);
+            g.drawString(verdict, x, baseline);
+            x += metrics.stringWidth(verdict) + 12;
+
+            g.setColor(Color.DARK_GRAY);
+            String detail = String.format("%,d replies", data.children()) + distanceText(data.distance());
+            g.drawString(detail, x, baseline);
+            x += metrics.stringWidth(detail) + 12;
+
+            if (data.move() == parent.choice) {
+                g.setColor(Color.BLUE);
+                g.drawString(parent.nimSum != 0 ? "<- makeWinningMove" : "<- computer's choice", x, baseline);
+            }
+        }
+
+        private void drawToggle(Graphics g, int x, int y, int h, boolean open) {
+            int s = 8;
+            int cy = y + h / 2;
+            g.setColor(Color.GRAY);
+            if (open) {
+                g.fillPolygon(new int[]{x, x + s, x + s / 2}, new int[]{cy - s / 4, cy - s / 4, cy + s / 2}, 3);
+            } else {
+                g.fillPolygon(new int[]{x + s / 4, x + s / 4, x + s}, new int[]{cy - s / 2, cy + s / 2, cy}, 3);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        OctalGame rules = args.length > 0 ? OctalGame.parse(args[0]) : OctalGame.NIM;
+        long[] piles = args.length > 1 ? NimEngine.parsePiles(args[1]) : new long[]{3, 7, 5};
+        SwingUtilities.invokeLater(() -> {
+            GameTreeExplorer explorer = new GameTreeExplorer(rules, piles, Tablebase.forStandardGame(rules));
+            explorer.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            explorer.setVisible(true);
+        });
+    }
+}
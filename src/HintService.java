@@ -0,0 +1,192 @@
+import javax.swing.SwingUtilities;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Works out the move to suggest to the human, for the Nim window's Hint button, with the same analysis the computer
+// plays by: the endgame tablebase, then a game-tree search for variants, then the winning move. A search that runs out
+// of time without proving its result gives way to the winning move, since a hint must not steer the player wrong.
+// Beyond the tablebase, a position small enough to solve in well under a second is solved exactly by a PositionSolver
+// first, whose off-heap store keeps every position solved so far for later hints, so the hint is the quickest win or
+// the longest resistance there too, for Nim as for variants.
+//
+// The analysis runs on a background thread, since a variant's search takes its whole time budget, and finished hints
+// are cached by position so asking again about a position seen before is answered at once. Only one hint is worked out
+// at a time; asking about another position, or cancel() when the position changes, interrupts it, which stops a search
+// within microseconds, and a cancelled hint is neither shown nor cached. Everything but the analysis itself happens on
+// the event dispatch thread, so the cache needs no locking.
+final class HintService implements AutoCloseable {
+
+    private static final int CACHE_POSITIONS = 1024;
+    private static final long SOLVER_POSITIONS = 1 << 20; // positions the solver may reach from one hint's position
+    private static final long SOLVER_WORK = 1 << 24;      // and moves it may look at to solve them
+    private static final long STORE_CAPACITY = 4 * SOLVER_POSITIONS; // 64 MiB off-heap, kept at most half full
+
+    // The suggested move, and whether it wins against best play (otherwise it holds out the longest the analysis
+    // found). The move is NO_MOVE when the game is over.
+    record Hint(long move, boolean winning) {
+    }
+
+    // A position by value, as cache key.
+    private record Position(long[] piles) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Position p && Arrays.equals(piles, p.piles);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(piles);
+        }
+    }
+
+    private final Tablebase tablebase;  // may be null
+    private final SearchEngine search;  // null in plain Nim, where the nim-sum is exact
+    private final SearchEngine.Difficulty difficulty;
+    private final ExecutorService analyst = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(null, task, "hint", 1L << 26); // the solver recurses once per move
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Position, Hint> cache = new LinkedHashMap<>(CACHE_POSITIONS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Position, Hint> eldest) {
+            return size() > CACHE_POSITIONS;
+        }
+    };
+    private PositionSolver solver; // made on first use, on the hint thread, for the position's pile count
+    private Future<?> pending;
+    private long generation; // bumped by every request and cancel, so only the latest request's hint is shown
+    private long hits;
+    private long misses;
+
+    HintService(OctalGame rules, Tablebase tablebase, SearchEngine.Difficulty difficulty) {
+        this.tablebase = tablebase;
+        this.search = rules.isNim() ? null : new SearchEngine();
+        this.difficulty = difficulty;
+    }
+
+    // Passes the hint for the engine's position to show: right away if the position is cached, otherwise on the EDT
+    // once it has been worked out, unless cancel() or another request comes first. Returns whether it was cached.
+    boolean request(NimEngine engine, Consumer<Hint> show) {
+        cancel();
+        Position position = new Position(engine.piles());
+        Hint hint = cache.get(position);
+        if (hint != null) {
+            hits++;
+            show.accept(hint);
+            return true;
+        }
+        misses++;
+        NimEngine copy = new NimEngine(engine.rules(), position.piles());
+        long request = generation;
+        pending = analyst.submit(() -> {
+            Hint result = analyse(copy);
+            if (Thread.currentThread().isInterrupted()) {
+                return; // cancelled, possibly in the middle of a search whose answer is then only a guess
+            }
+            SwingUtilities.invokeLater(() -> {
+                cache.put(position, result);
+                if (request == generation) {
+                    pending = null;
+                    show.accept(result);
+                }
+            });
+        });
+        return false;
+    }
+
+    // Drops the hint being worked out, if any. Call whenever the position changes.
+    void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    // Runs on the hint thread, on its own copy of the position.
+    private Hint analyse(NimEngine position) {
+        if (position.isGameOver()) {
+            return new Hint(NimEngine.NO_MOVE, false);
+        }
+        boolean winning = position.nimSum() != 0;
+        // The quickest win, or the longest-resisting loss, when the position is in the endgame tablebase
+        long move = tablebase != null ? tablebase.bestMove(position) : NimEngine.NO_MOVE;
+        if (move == NimEngine.NO_MOVE) {
+            // Beyond it, the same answer from an exact solve, if the position is small enough
+            PositionSolver solver = solver(position);
+            if (solver != null) {
+                move = solver.bestMove(position);
+            }
+        }
+        if (move == NimEngine.NO_MOVE && search != null) {
+            // A proven result is the quickest win or slowest loss; a search cut off by its budget may suggest a losing
+            // move where the Grundy values below have a winning one
+            SearchEngine.Result result = search.search(position, SearchEngine.Algorithm.ALPHA_BETA, difficulty);
+            if (result.proven()) {
+                move = result.move();
+            }
+        }
+        if (move == NimEngine.NO_MOVE) {
+            move = position.winningMove();
+        }
+        if (move == NimEngine.NO_MOVE) {
+            move = stallingMove(position);
+        }
+        return new Hint(move, winning);
+    }
+
+    // The solver for the position, or null if solving it could take too long. The store is replaced when the pile
+    // count changes, since keys are packed per pile count, and when the position might fill it past half.
+    private PositionSolver solver(NimEngine position) {
+        double positions = 1;
+        double moves = 0;
+        for (int i = 0; i < position.pileCount(); i++) {
+            positions *= position.pile(i) + 1;
+            moves += Math.min(position.pile(i), position.rules().maxTake());
+        }
+        if (positions > SOLVER_POSITIONS || positions * moves > SOLVER_WORK) {
+            return null;
+        }
+        if (solver == null || solver.pileCount() != position.pileCount()
+                || solver.store().size() + positions > STORE_CAPACITY / 2) {
+            OffHeapPositionStore store = new OffHeapPositionStore(STORE_CAPACITY);
+            solver = new PositionSolver(position.rules(), position.pileCount(), store);
+        }
+        return solver.covers(position) ? solver : null;
+    }
+
+    // With no winning move, the smallest removal from the largest pile that can be played, which leaves the most
+    // moves in which the opponent can go wrong.
+    private static long stallingMove(NimEngine position) {
+        int largest = -1;
+        for (int i = 0; i < position.pileCount(); i++) {
+            if (position.rules().legalMoveCount(position.pile(i)) > 0
+                    && (largest < 0 || position.pile(i) > position.pile(largest))) {
+                largest = i;
+            }
+        }
+        return NimEngine.move(largest, position.rules().nthMove(position.pile(largest), 0));
+    }
+
+    @Override
+    public void close() {
+        analyst.shutdownNow();
+        if (search != null) {
+            search.close();
+        }
+    }
+}
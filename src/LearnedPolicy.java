@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// A move policy learned by QLearningTrainer: for every position whose piles are all at most a bound, the move the
+// learned action values rate best, in constant time per move.
+//
+// The trainer only takes variants without splitting moves, which the Grundy values already solve exactly, so a policy
+// can only add a choice among losing moves. A learned move that would give up a win (from a partly trained policy, say)
+// is never returned, and the computer consults a policy after the endgame tablebase, whose answers are exact, so a
+// policy is worth training for piles beyond the tablebase's bound.
+//
+// The file is laid out like a tablebase: a 64-byte header ("NMQP", version, pile count, bound, largest count, variant
+// code), then one 2-byte entry per position in the same mixed-radix order, holding pile * largest count + count - 1
+// for the chosen move, or -1 for a position without moves. It is memory-mapped, so opening it costs nothing on the heap.
+//
+// Usage: java LearnedPolicy info <file>
+public final class LearnedPolicy {
+
+    public static final short NO_ENTRY = -1;
+
+    private static final int MAGIC = 0x4E4D5150; // "NMQP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int MAX_CODE_BYTES = HEADER_BYTES - 6 * Integer.BYTES;
+
+    private final OctalGame rules;
+    private final int pileCount;
+    private final int bound;
+    private final int maxCount;    // largest count a move in the table removes
+    private final long[] strides;  // strides[i] = (bound + 1)^i
+    private final long positions;
+    private final ShortBuffer moves;
+
+    private LearnedPolicy(OctalGame rules, int pileCount, int bound, int maxCount, ShortBuffer moves) {
+        this.rules = rules;
+        this.pileCount = pileCount;
+        this.bound = bound;
+        this.maxCount = maxCount;
+        this.strides = new long[pileCount];
+        long stride = 1;
+        for (int i = 0; i < pileCount; i++) {
+            strides[i] = stride;
+            stride *= bound + 1;
+        }
+        this.positions = stride;
+        this.moves = moves;
+    }
+
+    public OctalGame rules() {
+        return rules;
+    }
+
+    public int pileCount() {
+        return pileCount;
+    }
+
+    public int bound() {
+        return bound;
+    }
+
+    // Writes a policy: moves[position] is the entry for each position, in Tablebase order. The file is written to a
+    // temporary file first and moved into place, so a computer player starting meanwhile never sees half of it.
+    public static void write(Path file, OctalGame rules, int pileCount, int bound, int maxCount, short[] moves)
+            throws IOException {
+        byte[] code = rules.code().getBytes(StandardCharsets.US_ASCII);
+        if (code.length > MAX_CODE_BYTES) {
+            throw new IllegalArgumentException("Variant code too long for the policy header: " + rules);
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 2L * moves.length);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(pileCount).putInt(bound).putInt(maxCount)
+                        .putInt(code.length).put(code);
+                buffer.position(HEADER_BYTES).slice().asShortBuffer().put(moves);
+                buffer.force();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Maps an existing policy read-only.
+    public static LearnedPolicy open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a learned policy file: " + file);
+            }
+            int pileCount = buffer.getInt();
+            int bound = buffer.getInt();
+            int maxCount = buffer.getInt();
+            byte[] code = new byte[buffer.getInt()];
+            buffer.get(code);
+            String name = new String(code, StandardCharsets.US_ASCII);
+            OctalGame rules = name.equals(OctalGame.NIM.code()) ? OctalGame.NIM : OctalGame.of(name);
+            LearnedPolicy policy = new LearnedPolicy(rules, pileCount, bound, maxCount,
+                    buffer.position(HEADER_BYTES).slice().asShortBuffer());
+            if (channel.size() < HEADER_BYTES + 2 * policy.positions) {
+                throw new IOException("Truncated learned policy file: " + file);
+            }
+            return policy;
+        }
+    }
+
+    // The policy in the file named by the policy.file system property, if there is one and it was learned for these
+    // rules. Returns null (and the computer plays without it) otherwise.
+    public static LearnedPolicy openDefault(OctalGame rules) {
+        String file = System.getProperty("policy.file");
+        if (file == null) {
+            return null;
+        }
+        try {
+            LearnedPolicy policy = open(Path.of(file));
+            if (policy.rules != rules) {
+                System.err.println("Playing without the learned policy: it is for " + policy.rules + ", not " + rules);
+                return null;
+            }
+            return policy;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Playing without the learned policy: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // True if the engine plays these rules on this many piles and every pile is within the bound.
+    public boolean covers(NimEngine engine) {
+        if (engine.rules() != rules || engine.pileCount() != pileCount) {
+            return false;
+        }
+        for (int i = 0; i < pileCount; i++) {
+            if (engine.pile(i) > bound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The learned move for the engine's position, or NimEngine.NO_MOVE if the position is not covered, the game is over,
+    // the learned move does not win in a won position (the caller then plays engine.winningMove()), or the file is
+    // damaged and names an illegal move.
+    public long bestMove(NimEngine engine) {
+        if (!covers(engine)) {
+            return NimEngine.NO_MOVE;
+        }
+        long index = 0;
+        for (int i = 0; i < pileCount; i++) {
+            index += engine.pile(i) * strides[i];
+        }
+        int entry = moves.get((int) index);
+        if (entry == NO_ENTRY) {
+            return NimEngine.NO_MOVE;
+        }
+        int pile = entry / maxCount;
+        int count = entry % maxCount + 1;
+        if (pile >= pileCount || !engine.isLegal(pile, count)) {
+            return NimEngine.NO_MOVE;
+        }
+        long heap = engine.pile(pile);
+        boolean wins = (engine.nimSum() ^ rules.grundy(heap) ^ rules.grundy(heap - count)) == 0;
+        return wins || engine.nimSum() == 0 ? NimEngine.move(pile, count) : NimEngine.NO_MOVE;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("info")) {
+            LearnedPolicy policy = open(Path.of(args[1]));
+            System.out.printf("Variant %s, %d piles up to %d, moves of up to %d, %,d positions%n",
+                    policy.rules, policy.pileCount, policy.bound, policy.maxCount, policy.positions);
+        } else {
+            System.err.println("Usage: java LearnedPolicy info <file>");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+// Streaming input and output for scripted games: move scripts and fuzz corpora with one move per line in the console
+// game's format, a pile letter (G, Y or O, either case) and a count separated by blanks, e.g. "Y 3".
+//
+// The reader pulls the channel through one reusable buffer and parses bytes by hand, and the writer formats text
+// straight into one reusable buffer that it writes out when full, so neither allocates per line or per move.
+final class MoveScript {
+
+    // Returned by Reader.next() at the end of the input, and for a line that is not a move.
+    static final long END = NimEngine.NO_MOVE;
+    static final long INVALID = -2L;
+
+    private MoveScript() {
+    }
+
+    static final class Reader {
+        private final ReadableByteChannel channel;
+        private final byte[] bytes = new byte[1 << 16];
+        private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        private int position;
+        private int limit;
+        private long line;
+
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        // Number of the line the last move (or invalid line) came from, counting from 1.
+        long line() {
+            return line;
+        }
+
+        // The next line's move, encoded as by NimEngine.move; INVALID if the line does not read as a move, or END.
+        // Blank lines are skipped, and a count too large for any pile is invalid. The move may still be illegal.
+        long next() throws IOException {
+            int b;
+            do {
+                b = skipBlanks();
+                if (b < 0) {
+                    return END;
+                }
+                line++;
+            } while (b == '\n');
+            int pile = switch (b | 0x20) { // lower case
+                case 'g' -> NimEngine.GREEN;
+                case 'y' -> NimEngine.YELLOW;
+                case 'o' -> NimEngine.ORANGE;
+                default -> -1;
+            };
+            b = read();
+            if (pile < 0 || (b != ' ' && b != '\t')) {
+                return skipLine(b);
+            }
+            b = skipBlanks();
+            if (b < '0' || b > '9') {
+                return skipLine(b);
+            }
+            long count = 0;
+            while (b >= '0' && b <= '9') {
+                count = Math.min(count * 10 + (b - '0'), NimEngine.MAX_PILE_SIZE + 1);
+                b = read();
+            }
+            if (b == ' ' || b == '\t' || b == '\r') {
+                b = skipBlanks();
+            }
+            if (b >= 0 && b != '\n') {
+                return skipLine(b);
+            }
+            return count > NimEngine.MAX_PILE_SIZE ? INVALID : NimEngine.move(pile, count);
+        }
+
+        // The next byte that is not a space, tab or carriage return, or -1 at the end.
+        private int skipBlanks() throws IOException {
+            int b;
+            do {
+                b = read();
+            } while (b == ' ' || b == '\t' || b == '\r');
+            return b;
+        }
+
+        private long skipLine(int b) throws IOException {
+            while (b >= 0 && b != '\n') {
+                b = read();
+            }
+            return INVALID;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                buffer.clear();
+                int n;
+                do {
+                    n = channel.read(buffer);
+                } while (n == 0);
+                if (n < 0) {
+                    return -1;
+                }
+                position = 0;
+                limit = n;
+            }
+            return bytes[position++] & 0xFF;
+        }
+    }
+
+    static final class Writer {
+        private final WritableByteChannel channel; // null: everything written is dropped
+        private final byte[] bytes = new byte[1 << 16];
+        private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        private int length;
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean enabled() {
+            return channel != null;
+        }
+
+        Writer append(String ascii) throws IOException {
+            if (channel != null) {
+                if (length + ascii.length() > bytes.length) {
+                    flush();
+                }
+                for (int i = 0; i < ascii.length(); i++) {
+                    bytes[length++] = (byte) ascii.charAt(i);
+                }
+            }
+            return this;
+        }
+
+        Writer append(long value) throws IOException {
+            if (channel != null) {
+                if (length + 20 > bytes.length) {
+                    flush();
+                }
+                if (value < 0) {
+                    bytes[length++] = '-';
+                    value = -value;
+                }
+                int start = length;
+                do {
+                    bytes[length++] = (byte) ('0' + value % 10);
+                    value /= 10;
+                } while (value != 0);
+                for (int i = start, j = length - 1; i < j; i++, j--) {
+                    byte digit = bytes[i];
+                    bytes[i] = bytes[j];
+                    bytes[j] = digit;
+                }
+            }
+            return this;
+        }
+
+        void flush() throws IOException {
+            if (channel != null && length > 0) {
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                length = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Head-to-head Double Trouble between two remote players over a four-byte binary protocol, served by one thread
+// running a NIO Selector loop. Moves are checked with the same rules as Nim.makeMove (NimEngine.apply).
+//
+// Every message, in both directions, is one frame: an opcode byte, a pile byte and a big-endian unsigned 16-bit count.
+//   client -> server   JOIN  (pile, count ignored)   wait for an opponent; sent again after a game to play another
+//                      MOVE  pile, count
+//   server -> client   START pile = your seat, 0 moving first
+//                      MOVED pile, count: a move by either player, so the mover's copy doubles as its acknowledgement
+//                      REJECT pile, count: the move was illegal or out of turn
+//                      OVER  pile = the winning seat, the player who took the last marker
+//                      LEFT  the opponent disconnected; the game is abandoned
+//
+// Each connection owns a direct input and output buffer allocated once at accept time. Replies produced while handling
+// one selector tick are appended to the output buffers and written with one write per connection at the end of the
+// tick. A client that lets its output buffer fill up is disconnected rather than buffered without bound.
+//
+// Usage: java MoveServer [port] [variant] [piles, e.g. 3,7,5]
+public final class MoveServer implements Runnable {
+
+    static final int FRAME = 4;
+    static final byte JOIN = 1;
+    static final byte MOVE = 2;
+    static final byte START = 16;
+    static final byte MOVED = 17;
+    static final byte REJECT = 18;
+    static final byte OVER = 19;
+    static final byte LEFT = 20;
+
+    private static final int IN_BUFFER = 512;
+    private static final int OUT_BUFFER = 4096;
+
+    private final Selector selector;
+    private final ServerSocketChannel listener;
+    private final OctalGame rules;
+    private final long[] startingPiles;
+    private final List<Connection> pendingWrites = new ArrayList<>();
+    private Connection waiting; // joined and not yet paired
+    private volatile boolean running = true;
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(IN_BUFFER);
+        final ByteBuffer out = ByteBuffer.allocateDirect(OUT_BUFFER);
+        SelectionKey key;
+        Game game;
+        int seat;
+        boolean pendingWrite;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static final class Game {
+        final NimEngine engine;
+        final Connection[] seats = new Connection[2];
+        int toMove;
+
+        Game(NimEngine engine) {
+            this.engine = engine;
+        }
+    }
+
+    public MoveServer(int port, OctalGame rules, long... startingPiles) throws IOException {
+        if (startingPiles.length > 256) {
+            throw new IllegalArgumentException("The protocol addresses at most 256 piles");
+        }
+        for (long pile : startingPiles) {
+            if (pile > 0xFFFF) {
+                throw new IllegalArgumentException("The protocol moves at most 65535 markers, got a pile of " + pile);
+            }
+        }
+        new NimEngine(rules, startingPiles); // rejects rules and positions the engine cannot play
+        this.rules = rules;
+        this.startingPiles = startingPiles.clone();
+        selector = Selector.open();
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port), 4096);
+        listener.configureBlocking(false);
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int port() throws IOException {
+        return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection);
+                    }
+                }
+                selector.selectedKeys().clear();
+                flush();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Move server failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(connection);
+            return;
+        }
+        ByteBuffer in = connection.in.flip();
+        while (in.remaining() >= FRAME && connection.key.isValid()) {
+            byte op = in.get();
+            int pile = in.get() & 0xFF;
+            int count = in.getShort() & 0xFFFF;
+            handle(connection, op, pile, count);
+        }
+        in.compact();
+    }
+
+    private void handle(Connection connection, byte op, int pile, int count) {
+        Game game = connection.game;
+        if (op == JOIN && game == null && connection != waiting) {
+            if (waiting == null) {
+                waiting = connection;
+                return;
+            }
+            game = new Game(new NimEngine(rules, startingPiles));
+            seat(game, waiting, 0);
+            seat(game, connection, 1);
+            waiting = null;
+            if (send(game.seats[0], START, 0, 0)) {
+                send(game.seats[1], START, 1, 0);
+            }
+        } else if (op == MOVE && game != null && game.seats[game.toMove] == connection
+                && game.engine.apply(pile, count)) {
+            if (!send(game.seats[0], MOVED, pile, count) || !send(game.seats[1], MOVED, pile, count)) {
+                return; // a seat that stopped reading was closed, which ended the game with LEFT
+            }
+            if (game.engine.isGameOver()) {
+                endGame(game, OVER, game.toMove);
+            } else {
+                game.toMove ^= 1;
+            }
+        } else if (op == MOVE) {
+            send(connection, REJECT, pile, count);
+        } else {
+            close(connection); // unknown opcode or a JOIN out of place: not a client we understand
+        }
+    }
+
+    private void seat(Game game, Connection connection, int seat) {
+        game.seats[seat] = connection;
+        connection.game = game;
+        connection.seat = seat;
+    }
+
+    // Both seats leave the game before either is told, so a seat closed by a failed send does not end it again.
+    private void endGame(Game game, byte op, int pile) {
+        for (Connection seat : game.seats) {
+            seat.game = null;
+        }
+        for (Connection seat : game.seats) {
+            if (seat.key.isValid()) {
+                send(seat, op, pile, 0);
+            }
+        }
+    }
+
+    // Queues a frame for the end of the tick. Returns false, having closed the connection and so ended its game, if
+    // the client has stopped reading and its output buffer is full; nothing more may then be sent for that game.
+    private boolean send(Connection connection, byte op, int pile, int count) {
+        ByteBuffer out = connection.out;
+        if (out.remaining() < FRAME) {
+            close(connection);
+            return false;
+        }
+        out.put(op).put((byte) pile).putShort((short) count);
+        if (!connection.pendingWrite) {
+            connection.pendingWrite = true;
+            pendingWrites.add(connection);
+        }
+        return true;
+    }
+
+    // Writes everything queued during this tick, one write per connection.
+    private void flush() {
+        for (int i = 0; i < pendingWrites.size(); i++) {
+            Connection connection = pendingWrites.get(i);
+            connection.pendingWrite = false;
+            if (connection.key.isValid()) {
+                try {
+                    write(connection);
+                } catch (IOException e) {
+                    close(connection);
+                }
+            }
+        }
+        pendingWrites.clear();
+    }
+
+    // Writes what the socket accepts, waiting for OP_WRITE to send the rest.
+    private void write(Connection connection) throws IOException {
+        ByteBuffer out = connection.out.flip();
+        connection.channel.write(out);
+        boolean drained = !out.hasRemaining();
+        out.compact();
+        connection.key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void close(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        closeQuietly(connection.key);
+        if (waiting == connection) {
+            waiting = null;
+        }
+        Game game = connection.game;
+        if (game != null) {
+            endGame(game, LEFT, connection.seat);
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // nothing more to do with a connection that is going away
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7575;
+        OctalGame rules = args.length > 1 ? OctalGame.parse(args[1]) : OctalGame.NIM;
+        long[] piles = args.length > 2 ? NimEngine.parsePiles(args[2]) : new long[]{3, 7, 5};
+        MoveServer server = new MoveServer(port, rules, piles);
+        System.out.printf("Move server on port %d playing %s on %s%n", server.port(), rules, new NimEngine(rules, piles));
+        server.run();
+    }
+}
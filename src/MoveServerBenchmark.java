@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Loopback benchmark for MoveServer: opens thousands of connections from one selector thread, pairs them into games
+// and has every player answer its turn at once with a random legal move. The round trip of each move, from sending it
+// to receiving the server's MOVED echo, is recorded, and the run reports throughput and latency percentiles.
+// Without an address it starts a server in-process on a free port.
+//
+// Usage: java MoveServerBenchmark [connections] [seconds] [host:port]
+public final class MoveServerBenchmark {
+
+    private static final int MAX_SAMPLES = 4_000_000;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int sampleCount;
+    private long movesSent;
+    private long gamesFinished;
+
+    private static final class Player {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(512);
+        final ByteBuffer out = ByteBuffer.allocateDirect(64);
+        final NimEngine engine = new NimEngine();
+        int seat;
+        int toMove;
+        long sentAt; // nanoTime the outstanding move was sent, 0 if none
+
+        Player(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private void send(Player player, byte op, int pile, int count) throws IOException {
+        player.out.clear();
+        player.out.put(op).put((byte) pile).putShort((short) count).flip();
+        while (player.out.hasRemaining()) {
+            player.channel.write(player.out);
+        }
+    }
+
+    private void playIfOnMove(Player player) throws IOException {
+        if (player.toMove == player.seat && player.sentAt == 0) {
+            long move = player.engine.randomMove(random);
+            player.sentAt = System.nanoTime();
+            movesSent++;
+            send(player, MoveServer.MOVE, NimEngine.movePile(move), (int) NimEngine.moveCount(move));
+        }
+    }
+
+    private void receive(Player player, byte op, int pile, int count) throws IOException {
+        switch (op) {
+            case MoveServer.START -> {
+                player.seat = pile;
+                player.toMove = 0;
+                player.engine.reset();
+                playIfOnMove(player);
+            }
+            case MoveServer.MOVED -> {
+                if (player.toMove == player.seat) {
+                    if (sampleCount < MAX_SAMPLES) {
+                        samples[sampleCount++] = System.nanoTime() - player.sentAt;
+                    }
+                    player.sentAt = 0;
+                }
+                player.engine.apply(pile, count);
+                player.toMove ^= 1;
+                if (!player.engine.isGameOver()) {
+                    playIfOnMove(player);
+                }
+            }
+            case MoveServer.OVER, MoveServer.LEFT -> {
+                if (player.seat == 0) {
+                    gamesFinished++;
+                }
+                player.sentAt = 0;
+                send(player, MoveServer.JOIN, 0, 0);
+            }
+            default -> throw new IllegalStateException("Unexpected opcode " + op);
+        }
+    }
+
+    void run(InetSocketAddress address, int connections, long seconds) throws IOException {
+        try (Selector selector = Selector.open()) {
+            Player[] players = new Player[connections];
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                players[i] = new Player(channel);
+                channel.register(selector, SelectionKey.OP_READ, players[i]);
+            }
+            for (Player player : players) {
+                send(player, MoveServer.JOIN, 0, 0);
+            }
+            System.out.printf("%,d connections open%n", connections);
+
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            while (System.nanoTime() < end) {
+                selector.select(100);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Player player = (Player) key.attachment();
+                    if (player.channel.read(player.in) < 0) {
+                        throw new IOException("Server closed the connection");
+                    }
+                    ByteBuffer in = player.in.flip();
+                    while (in.remaining() >= MoveServer.FRAME) {
+                        receive(player, in.get(), in.get() & 0xFF, in.getShort() & 0xFFFF);
+                    }
+                    in.compact();
+                }
+                selector.selectedKeys().clear();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            System.out.printf("%,d moves, %,d games in %.1f s: %,.0f moves/sec%n",
+                    movesSent, gamesFinished, elapsed, movesSent / elapsed);
+            if (sampleCount > 0) {
+                System.out.printf("round trip p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                        percentileMicros(sorted, 0.50), percentileMicros(sorted, 0.99),
+                        percentileMicros(sorted, 0.999), sorted[sampleCount - 1] / 1e3);
+            }
+            for (Player player : players) {
+                player.channel.close();
+            }
+        }
+    }
+
+    private static double percentileMicros(long[] sorted, double fraction) {
+        return sorted[(int) Math.round(fraction * (sorted.length - 1))] / 1e3;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        MoveServer server = null;
+        InetSocketAddress address;
+        if (args.length > 2) {
+            String[] hostPort = args[2].split(":");
+            address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        } else {
+            server = new MoveServer(0, OctalGame.NIM, 3, 7, 5);
+            Thread thread = new Thread(server, "move-server");
+            thread.setDaemon(true);
+            thread.start();
+            address = new InetSocketAddress("localhost", server.port());
+        }
+        try {
+            new MoveServerBenchmark().run(address, connections, seconds);
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
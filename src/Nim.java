@@ -19,10 +19,20 @@ import java.util.*;
 public class Nim extends JFrame {    //Defines the Nim class which extends JFrame, making it a Swing application window.
 
 
-    // Initializes the markers for each color pile with their starting counts.
-    private int greenMarkers = 3;
-    private int yellowMarkers = 7;
-    private int orangeMarkers = 5;
+    // Headless game engine holding the markers for each color pile, starting at Green 3, Yellow 7, Orange 5.
+    // For variants such as "take at most 3" the engine plays on the piles' Grundy values instead of their sizes.
+    private final NimEngine engine;
+
+    // Distance-to-win table for small positions, so the computer wins as fast as possible and loses as slowly as possible.
+    // Null if it could not be opened, in which case the computer plays the plain strategy.
+    private final Tablebase tablebase;
+    // The computer's moves: the tablebase's where it covers the position, otherwise the winning move, otherwise a
+    // random one. The same Strategy plays as a bot in BotArena.
+    private final Strategy strategy;
+    private final GameEventSink events; // the game journal's recorder and the lifetime statistics, where available
+    // Works out the Hint button's suggestions in the background, caching them by position.
+    private final HintService hints;
+    private JButton hintedButton; // the pile button highlighted by the current hint, if any
 
     // Declares GUI components for displaying game status, buttons for each color pile, and text fields for inputting the number of markers to remove.
     private  JLabel statusLabel;
@@ -49,6 +59,9 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
     private JLabel computerScoreLabel;
     private JLabel playerScoreLabel;
 
+    // Draws every marker, fading out the ones the computer removes.
+    private final PileView pileView;
+
 
     // Indicates whose turn it is. Initialized to true, meaning the player goes first by default.
     private boolean playerTurn = true;
@@ -56,6 +69,9 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
     // A Random instance for making random decisions, used by the computer in certain game states.
     private final Random random = new Random();
 
+    // Color keys used by the text fields, indexed by the engine's pile numbers.
+    private static final char[] COLORS = {'g', 'y', 'o'};
+
     // Documentation for code present inside the constrcutor.
     // Sets the window title, size, close operation, and layout manager.
     //
@@ -65,27 +81,62 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
     //Input Panel
     //Sets up the input panel with text fields for each color and action buttons (Replay, Remove, Quit). Includes labels for displaying scores.
     public Nim() {   // The Constructor for class Nim
-        setTitle("Nim");
+        this(OctalGame.NIM, 3, 7, 5);
+    }
+
+    // Plays a variant from the given Green, Yellow and Orange starting counts. With a periodic variant such as
+    // "take at most 3" the piles can be as large as the engine allows (about 10^12 markers each).
+    public Nim(OctalGame rules, long... startingPiles) {
+        if (startingPiles.length != 3) {
+            throw new IllegalArgumentException("Nim is played on three piles");
+        }
+        engine = new NimEngine(rules, startingPiles);
+        tablebase = Tablebase.forStandardGame(rules);
+        strategy = Strategy.tablebase(tablebase, Strategy.xor(Strategy.random()));
+        hints = new HintService(rules, tablebase, SearchEngine.Difficulty.HARD);
+        GameJournal journal = GameJournal.openDefault();
+        TournamentStats stats = TournamentStats.openDefault();
+        events = GameEventSink.tee(journal == null ? null : journal.recorder(engine),
+                stats == null ? null : stats.recorder(TournamentStats.defaultPlayer(), engine));
+        events.tournamentStarted(0); // Nim's series runs until the player quits
+        setTitle(rules.isNim() ? "Nim" : "Nim (" + rules + ")");
         setSize(400, 300);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                hints.close(); // stops a hint's search before the window goes
+            }
+        });
         setLayout(new BorderLayout());
 
         JPanel topPanel = new JPanel(new BorderLayout());
         statusLabel = new JLabel("Welcome to Nim (DoubleTrouble)", SwingConstants.CENTER);
         topPanel.add(statusLabel, BorderLayout.CENTER);
 
+        // Hint highlights the move the computer would play in the player's place; Analyze opens the game tree below
+        // the current position, showing why the computer plays the moves it does
+        JPanel toolPanel = new JPanel(new GridLayout(2, 1));
+        JButton hintButton = new JButton("Hint");
+        hintButton.addActionListener(e -> showHint());
+        JButton analyzeButton = new JButton("Analyze");
+        analyzeButton.addActionListener(e -> new GameTreeExplorer(engine.rules(), engine.piles(), tablebase).setVisible(true));
+        toolPanel.add(hintButton);
+        toolPanel.add(analyzeButton);
+        topPanel.add(toolPanel, BorderLayout.EAST);
+
         JPanel buttonPanel = new JPanel(new GridLayout(1, 3));
-        greenButton = new JButton("Green (" + greenMarkers + ")");
+        greenButton = new JButton("Green (" + engine.pile(NimEngine.GREEN) + ")");
         greenButton.setBackground(Color.GREEN);
         greenButton.setOpaque(true);
         greenButton.setBorderPainted(false); // Ensure the background color is visible
 
-        yellowButton = new JButton("Yellow (" + yellowMarkers + ")");
+        yellowButton = new JButton("Yellow (" + engine.pile(NimEngine.YELLOW) + ")");
         yellowButton.setBackground(Color.YELLOW);
         yellowButton.setOpaque(true);
         yellowButton.setBorderPainted(false); // Ensure the background color is visible
 
-        orangeButton = new JButton("Orange (" + orangeMarkers + ")");
+        orangeButton = new JButton("Orange (" + engine.pile(NimEngine.ORANGE) + ")");
         orangeButton.setBackground(new Color(255, 153, 0)); // There is no standard orange color
         orangeButton.setOpaque(true);
         orangeButton.setBorderPainted(false); // Ensure the background color is visible
@@ -137,16 +188,22 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
 
         add(inputPanel, BorderLayout.CENTER);
 
+        pileView = new PileView(engine);
+        add(new JScrollPane(pileView), BorderLayout.SOUTH); // scrolls when there are too many piles to fit
+        pack(); // make room for the pile view below the 400x300 controls
+
         setVisible(true);
 
         askWhoGoesFirst();
     }
-    // Prompts the user to choose who goes first at the beginning of the game.
+    // Prompts the user to choose who goes first at the beginning of the game. The computer's opening move runs as its
+    // own event rather than inside resetGame's call chain, so starting rounds never nests on the stack.
     private void askWhoGoesFirst() {
         int choice = JOptionPane.showOptionDialog(null, "Who goes first?", "Choose", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null, new String[]{"Player", "Computer"}, "Player");
         playerTurn = (choice == JOptionPane.YES_OPTION);
+        events.roundStarted(playerTurn ? Tournament.PLAYER : Tournament.COMPUTER);
         if (!playerTurn) {
-            solveNim();
+            SwingUtilities.invokeLater(this::solveNim);
         }
     }
     // Defines the action listener for buttons, handling clicks on color buttons, Remove, Replay, and Quit.
@@ -182,7 +239,7 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
     // Attempts to remove markers from the specified pile. Validates the input and updates the game state accordingly.
     private void removeMarkers(char color, JTextField textField) {
         try {
-            int number = Integer.parseInt(textField.getText());
+            long number = Long.parseLong(textField.getText());
             if (makeMove(color, number)) {
                 updateStatusLabel();
                 if (checkGameEnd()) {
@@ -198,39 +255,20 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
     }
 
     // Executes a move by removing a specified number of markers from a pile. Returns true if the move is valid.
-    private boolean makeMove(char color, int number) {
-        switch (color) {
-            case 'g':
-                if (number > 0 && number <= greenMarkers) {
-                    greenMarkers -= number;
-                    greenButton.setText("Green (" + greenMarkers + ")");
-                    updateStatusLabel();
-                    return true;
-                }
-                break;
-            case 'y':
-                if (number > 0 && number <= yellowMarkers) {
-                    yellowMarkers -= number;
-                    yellowButton.setText("Yellow (" + yellowMarkers + ")");
-                    updateStatusLabel();
-                    return true;
-                }
-                break;
-            case 'o':
-                if (number > 0 && number <= orangeMarkers) {
-                    orangeMarkers -= number;
-                    orangeButton.setText("Orange (" + orangeMarkers + ")");
-                    updateStatusLabel();
-                    return true;
-                }
-                break;
+    private boolean makeMove(char color, long number) {
+        int pile = pileIndex(color);
+        if (pile >= 0 && engine.apply(pile, number)) {
+            events.moved(playerTurn ? Tournament.PLAYER : Tournament.COMPUTER, NimEngine.move(pile, number));
+            updatePileButtons();
+            updateStatusLabel();
+            return true;
         }
         JOptionPane.showMessageDialog(null, "Invalid move. Please enter a valid number of markers.");
         return false;
     }
     //  Checks if the game has ended (no markers left) and declares the winner.
     private boolean checkGameEnd() {
-        if (greenMarkers + yellowMarkers + orangeMarkers == 0) {
+        if (engine.isGameOver()) {
             // The game ends when there are no markers left.
             greenTextField.setText("");
             yellowTextField.setText("");
@@ -242,6 +280,7 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
                 winner = "Computer";
                 computerScore++;
                 computerScoreLabel.setText("Computer Score: " + computerScore);
+                events.roundWon(Tournament.COMPUTER, computerScore);
 
                 // Sad message for player loss
                 message = "Hawwwww :((( You lost.";
@@ -253,6 +292,7 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
                 winner = "Player";
                 playerScore++;
                 playerScoreLabel.setText("Player Score: " + playerScore);
+                events.roundWon(Tournament.PLAYER, playerScore);
 
                 // Celebration message for player win
                 message = "Hurrah! You won! 🎉 Yipeeeeeeee";
@@ -273,33 +313,12 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
 
 
 
-    // Contains the logic for the computer's strategy to make a winning move or a random move if no winning move is available.
+    // Plays the computer's strategy: a winning move, or a random move if no winning move is available.
     private void solveNim() {
-        int xorSum = greenMarkers ^ yellowMarkers ^ orangeMarkers;
-
-        if (xorSum != 0) {
-            makeWinningMove(xorSum);
-        } else {
-            makeRandomMove();
-        }
+        playComputerMove(strategy.move(engine, random));
 
         playerTurn = true; // It's now the player's turn
     }
-    // Executes a random move by the computer when it cannot force a win.
-    private void makeRandomMove() {
-        char[] colors = new char[]{'g', 'y', 'o'};
-        int[] markers = new int[]{greenMarkers, yellowMarkers, orangeMarkers};
-        int pile;
-
-        do {
-            pile = random.nextInt(markers.length);
-        } while (markers[pile] == 0);
-
-        int removeCount = 1 + random.nextInt(markers[pile]);
-        makeMove(colors[pile], removeCount);
-        statusLabel.setText("Computer removed " + removeCount + " from the " + colorName(colors[pile]) + " pile.");
-        checkGameEnd(); // Check if the game has ended after the computer's move
-    }
 
     private String colorName(char color) {
         return switch (color) {
@@ -309,25 +328,74 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
             default -> "unknown";
         };
     }
-    //
-    private void makeWinningMove(int xorSum) {
-        int[] markers = new int[]{greenMarkers, yellowMarkers, orangeMarkers};
-        char[] colors = new char[]{'g', 'y', 'o'};
-
-        for (int i = 0; i < markers.length; i++) {
-            int desiredValue = markers[i] ^ xorSum;
-            if (desiredValue < markers[i]) {
-                int removeCount = markers[i] - desiredValue;
-                makeMove(colors[i], removeCount);
-                statusLabel.setText("Computer removed " + removeCount + " from the " + colorName(colors[i]) + " pile.");
-                checkGameEnd(); // Check if the game has ended after the computer's move
-                break;
+    // Plays a move chosen by the engine through the same path as the player's moves and reports it.
+    private void playComputerMove(long move) {
+        if (move == NimEngine.NO_MOVE) {
+            return;
+        }
+        char color = COLORS[NimEngine.movePile(move)];
+        long removeCount = NimEngine.moveCount(move);
+        makeMove(color, removeCount);
+        statusLabel.setText("Computer removed " + removeCount + " from the " + colorName(color) + " pile.");
+        checkGameEnd(); // Check if the game has ended after the computer's move
+    }
+    // Maps a color key to the engine's pile index.
+    private static int pileIndex(char color) {
+        for (int i = 0; i < COLORS.length; i++) {
+            if (COLORS[i] == color) {
+                return i;
             }
         }
+        return -1;
+    }
+    // Asks for a hint on the current position. A position seen before is answered at once; otherwise the hint shows up
+    // when the background analysis is done, unless a move is made first.
+    private void showHint() {
+        if (!playerTurn || engine.isGameOver()) {
+            return;
+        }
+        if (!hints.request(engine, this::highlightHint)) {
+            statusLabel.setText("Working out a hint...");
+        }
+    }
+    // Highlights the hinted pile and fills in its count, so pressing Remove plays the hint.
+    private void highlightHint(HintService.Hint hint) {
+        if (hint.move() == NimEngine.NO_MOVE) {
+            return;
+        }
+        int pile = NimEngine.movePile(hint.move());
+        long count = NimEngine.moveCount(hint.move());
+        JButton[] buttons = {greenButton, yellowButton, orangeButton};
+        JTextField[] fields = {greenTextField, yellowTextField, orangeTextField};
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].setText(i == pile ? Long.toString(count) : "");
+        }
+        clearHighlight();
+        hintedButton = buttons[pile];
+        hintedButton.setBorder(BorderFactory.createLineBorder(Color.BLACK, 3));
+        hintedButton.setBorderPainted(true);
+        fields[pile].requestFocus();
+        statusLabel.setText("Hint: take " + count + " from the " + colorName(COLORS[pile]) + " pile"
+                + (hint.winning() ? ", which wins." : ". You cannot force a win; this holds out longest."));
+    }
+    private void clearHighlight() {
+        if (hintedButton != null) {
+            hintedButton.setBorderPainted(false);
+            hintedButton = null;
+        }
+    }
+    // Refreshes the pile buttons with the engine's current marker counts. A hint for the previous position is dropped.
+    private void updatePileButtons() {
+        hints.cancel();
+        clearHighlight();
+        greenButton.setText("Green (" + engine.pile(NimEngine.GREEN) + ")");
+        yellowButton.setText("Yellow (" + engine.pile(NimEngine.YELLOW) + ")");
+        orangeButton.setText("Orange (" + engine.pile(NimEngine.ORANGE) + ")");
+        pileView.refresh(!playerTurn);
     }
     // Updates the status label to reflect the current state of the game.
     private void updateStatusLabel() {
-        statusLabel.setText("Current markers - Green: " + greenMarkers + ", Yellow: " + yellowMarkers + ", Orange: " + orangeMarkers);
+        statusLabel.setText("Current markers - Green: " + engine.pile(NimEngine.GREEN) + ", Yellow: " + engine.pile(NimEngine.YELLOW) + ", Orange: " + engine.pile(NimEngine.ORANGE));
     }
     // Updates the score based on the winner of a game round.
     private void updateScore(String winner) {
@@ -341,12 +409,8 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
     }
     // Resets the game to its initial state for a new round.
     private void resetGame() {
-        greenMarkers = 3;
-        yellowMarkers = 7;
-        orangeMarkers = 5;
-        greenButton.setText("Green (" + greenMarkers + ")");
-        yellowButton.setText("Yellow (" + yellowMarkers + ")");
-        orangeButton.setText("Orange (" + orangeMarkers + ")");
+        engine.reset();
+        updatePileButtons();
         updateStatusLabel();
         playerTurn = true;
         askWhoGoesFirst();
@@ -363,11 +427,27 @@ public class Nim extends JFrame {    //Defines the Nim class which extends JFram
             winner = "Tournament tied";
         }
         JOptionPane.showMessageDialog(null, "Tournament ended. Winner: " + winner);
+        events.flush(); // the journal commits it on the way out
+        hints.close();
         System.exit(0);
     }
 
     // The entry point of the application. It ensures the game's GUI is created on the Event Dispatch Thread for thread safety.
+    // Optional arguments pick a variant, e.g. "take-at-most-3" or an octal code such as "0.333", and the starting piles, e.g. "3,7,5".
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(Nim::new);
+        OctalGame rules;
+        long[] piles;
+        try {
+            rules = args.length > 0 ? OctalGame.parse(args[0]) : OctalGame.NIM;
+            piles = args.length > 1 ? NimEngine.parsePiles(args[1]) : new long[]{3, 7, 5};
+            new NimEngine(rules, piles); // rejects bad piles here rather than on the EDT
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java Nim [variant: " + OctalGame.VARIANTS + "] [piles, e.g. 3,7,5]");
+            System.exit(2);
+            return;
+        }
+        EdtWatchdog.installFromProperty();
+        SwingUtilities.invokeLater(() -> new Nim(rules, piles));
     }
 }
\ No newline at end of file
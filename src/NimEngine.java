@@ -0,0 +1,295 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+// Headless rules engine shared by Nim, DoubleTroubleGame and DoubleTroubleGUI.
+// The position lives in a primitive long[] and moves are packed into a single long, so playing a move allocates nothing.
+// The engine knows nothing about Swing or the console; the front-ends only translate clicks and text into pile indices.
+//
+// Any number of piles is supported. The nim-sum is updated incrementally on every move, and for positions with more
+// than a handful of piles a PileBitIndex records which piles have each bit set, so the winning move is found from the
+// highest bit of the nim-sum without scanning.
+// Two Fenwick trees, over the pile sizes and over which piles are non-empty, let the random-move generators pick
+// uniformly in O(log n) however sparse the position is.
+// A Zobrist hash of the piles is updated on every move as well, so searches can look positions up in a
+// TranspositionTable without hashing the whole board.
+//
+// The engine can also play a non-splitting octal variant such as "take at most 3". Every pile then contributes its
+// Grundy value (from the shared OctalGame table) instead of its size, and the trees count legal moves instead of markers.
+public final class NimEngine {
+
+    // Pile indices used by the three Double Trouble front-ends.
+    public static final int GREEN = 0;
+    public static final int YELLOW = 1;
+    public static final int ORANGE = 2;
+
+    // Returned by the move generators when there is nothing to play (the position is empty, or no winning move exists).
+    public static final long NO_MOVE = -1L;
+
+    // A move is encoded as (pile << COUNT_BITS) | count, where count is the number of markers removed.
+    private static final int COUNT_BITS = 40;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    // Limits imposed by the move encoding: 23 bits of pile index (keeping moves non-negative) and 40 bits of count.
+    public static final int MAX_PILES = 1 << (Long.SIZE - 1 - COUNT_BITS);
+    public static final long MAX_PILE_SIZE = COUNT_MASK;
+
+    // Piles checked directly before consulting the bit index. Small positions (like the 3-pile game) never need the
+    // index, and in a random position each pile has about even odds of carrying the nim-sum's highest bit.
+    private static final int SCANNED_PILES = 8;
+
+    private final OctalGame rules;
+    private final long[] initialPiles;
+    private final long[] piles;
+    private final long[] moveWeights;       // legal moves per pile; the piles array itself for plain Nim
+    private final PileBitIndex bitIndex;     // null when every pile is within the scanned prefix
+    private final FenwickTree moveTree;      // weight of each pile = its number of legal moves (its size, in plain Nim)
+    private final FenwickTree movableTree;   // weight of each pile = 1 if it has a legal move
+    private long nimSum;       // XOR of the piles' Grundy values (their sizes, in plain Nim), kept up to date on every move
+    private long hash;         // XOR of Zobrist.key(i, piles[i])
+    private long markersLeft;  // total markers on the board
+    private long legalMoves;   // total legal moves
+    private int movablePiles;  // piles with at least one legal move, so the end-of-game check is O(1)
+
+    // Creates the standard Double Trouble position: Green 3, Yellow 7, Orange 5.
+    public NimEngine() {
+        this(3, 7, 5);
+    }
+
+    public NimEngine(int... startingPiles) {
+        this(Arrays.stream(startingPiles).asLongStream().toArray());
+    }
+
+    public NimEngine(long... startingPiles) {
+        this(OctalGame.NIM, startingPiles);
+    }
+
+    // Creates the standard Green 3, Yellow 7, Orange 5 position played under the given rules.
+    public NimEngine(OctalGame rules) {
+        this(rules, 3L, 7L, 5L);
+    }
+
+    public NimEngine(OctalGame rules, long... startingPiles) {
+        if (rules.splits()) {
+            throw new IllegalArgumentException("Variants that split heaps cannot be played on fixed piles: " + rules);
+        }
+        if (startingPiles.length == 0 || startingPiles.length > MAX_PILES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_PILES + " piles are required, got " + startingPiles.length);
+        }
+        for (long size : startingPiles) {
+            if (size < 0 || size > MAX_PILE_SIZE) {
+                throw new IllegalArgumentException("Pile sizes must be between 0 and " + MAX_PILE_SIZE + ", got " + size);
+            }
+        }
+        this.rules = rules;
+        initialPiles = startingPiles.clone();
+        piles = new long[startingPiles.length];
+        moveWeights = rules.isNim() ? piles : new long[piles.length];
+        bitIndex = piles.length > SCANNED_PILES ? new PileBitIndex(piles.length) : null;
+        moveTree = new FenwickTree(piles.length);
+        movableTree = new FenwickTree(piles.length);
+        reset();
+    }
+
+    // Parses a comma-separated list of pile sizes such as "3,7,5", as accepted on the command line.
+    public static long[] parsePiles(String text) {
+        String[] parts = text.split(",");
+        long[] piles = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            piles[i] = Long.parseLong(parts[i].trim());
+        }
+        return piles;
+    }
+
+    // Packs a pile index and a removal count into a single move value.
+    public static long move(int pile, long count) {
+        return ((long) pile << COUNT_BITS) | (count & COUNT_MASK);
+    }
+
+    public static int movePile(long move) {
+        return (int) (move >>> COUNT_BITS);
+    }
+
+    public static long moveCount(long move) {
+        return move & COUNT_MASK;
+    }
+
+    // Restores the starting position.
+    public void reset() {
+        System.arraycopy(initialPiles, 0, piles, 0, piles.length);
+        recompute();
+    }
+
+    private void recompute() {
+        long xor = 0;
+        long zobrist = 0;
+        long total = 0;
+        long moves = 0;
+        int movable = 0;
+        if (bitIndex != null) {
+            bitIndex.clear();
+        }
+        for (int i = 0; i < piles.length; i++) {
+            long grundy = rules.grundy(piles[i]);
+            long pileMoves = rules.legalMoveCount(piles[i]);
+            xor ^= grundy;
+            zobrist ^= Zobrist.key(i, piles[i]);
+            total += piles[i];
+            moves += pileMoves;
+            moveWeights[i] = pileMoves;
+            if (pileMoves > 0) {
+                movable++;
+            }
+            if (bitIndex != null) {
+                bitIndex.update(i, 0, grundy);
+            }
+        }
+        moveTree.build(moveWeights);
+        movableTree.buildNonZero(moveWeights);
+        nimSum = xor;
+        hash = zobrist;
+        markersLeft = total;
+        legalMoves = moves;
+        movablePiles = movable;
+    }
+
+    public OctalGame rules() {
+        return rules;
+    }
+
+    public int pileCount() {
+        return piles.length;
+    }
+
+    public long pile(int index) {
+        return piles[index];
+    }
+
+    // A copy of the current pile sizes, for example to start another engine from this position.
+    public long[] piles() {
+        return piles.clone();
+    }
+
+    public long nimSum() {
+        return nimSum;
+    }
+
+    // Zobrist hash of the pile sizes. The rules are not part of it, so a TranspositionTable should only be shared
+    // between engines playing the same variant.
+    public long hash() {
+        return hash;
+    }
+
+    public long markersLeft() {
+        return markersLeft;
+    }
+
+    // Number of legal moves in the current position.
+    public long legalMoveCount() {
+        return legalMoves;
+    }
+
+    // The game ends when the player to move has no legal move; in plain Nim, when the board is empty.
+    public boolean isGameOver() {
+        return movablePiles == 0;
+    }
+
+    public boolean isLegal(int pile, long count) {
+        return pile >= 0 && pile < piles.length && rules.allows(piles[pile], count);
+    }
+
+    // Removes count markers from the given pile. Returns false, leaving the position untouched, if the move is illegal.
+    public boolean apply(int pile, long count) {
+        if (!isLegal(pile, count)) {
+            return false;
+        }
+        setPile(pile, piles[pile] - count);
+        return true;
+    }
+
+    // Puts back the markers removed by a move, so a search can walk the game tree on one engine. The move must be the
+    // most recent one applied that has not been undone yet.
+    public void undo(long move) {
+        int pile = movePile(move);
+        setPile(pile, piles[pile] + moveCount(move));
+    }
+
+    private void setPile(int pile, long after) {
+        long before = piles[pile];
+        piles[pile] = after;
+        long grundyBefore = rules.grundy(before);
+        long grundyAfter = rules.grundy(after);
+        nimSum ^= grundyBefore ^ grundyAfter;
+        hash ^= Zobrist.key(pile, before) ^ Zobrist.key(pile, after);
+        markersLeft += after - before;
+        if (bitIndex != null) {
+            bitIndex.update(pile, grundyBefore, grundyAfter);
+        }
+        long movesBefore = rules.isNim() ? before : moveWeights[pile];
+        long movesAfter = rules.isNim() ? after : rules.legalMoveCount(after);
+        if (!rules.isNim()) {
+            moveWeights[pile] = movesAfter;
+        }
+        legalMoves += movesAfter - movesBefore;
+        moveTree.add(pile, movesAfter - movesBefore);
+        if (movesBefore > 0 && movesAfter == 0) {
+            movableTree.add(pile, -1);
+            movablePiles--;
+        } else if (movesBefore == 0 && movesAfter > 0) {
+            movableTree.add(pile, 1);
+            movablePiles++;
+        }
+    }
+
+    public boolean apply(long move) {
+        return move != NO_MOVE && apply(movePile(move), moveCount(move));
+    }
+
+    // Returns a move that leaves a zero nim-sum, or NO_MOVE if the player to move is already in a losing position.
+    // Any pile whose Grundy value has the nim-sum's highest bit set can be moved to one with value grundy ^ nimSum, so
+    // after a short scan of the first piles this is a single index lookup.
+    public long winningMove() {
+        if (nimSum == 0) {
+            return NO_MOVE;
+        }
+        int scanned = Math.min(piles.length, SCANNED_PILES);
+        for (int i = 0; i < scanned; i++) {
+            long grundy = rules.grundy(piles[i]);
+            if ((grundy ^ nimSum) < grundy) {
+                return move(i, rules.moveToGrundy(piles[i], grundy ^ nimSum));
+            }
+        }
+        int pile = bitIndex.anyPileWithBit(63 - Long.numberOfLeadingZeros(nimSum));
+        return move(pile, rules.moveToGrundy(piles[pile], rules.grundy(piles[pile]) ^ nimSum));
+    }
+
+    // Picks uniformly among all legal moves. A Fenwick tree over each pile's number of legal moves finds the pile that
+    // holds a random move number; in plain Nim that is a random marker, removed together with every marker below it.
+    public long randomMove(RandomGenerator random) {
+        if (legalMoves == 0) {
+            return NO_MOVE;
+        }
+        long moveNumber = random.nextLong(legalMoves);
+        int pile = moveTree.find(moveNumber);
+        return move(pile, rules.nthMove(piles[pile], moveNumber - moveTree.prefixSum(pile)));
+    }
+
+    // Picks a random pile that can still be played and removes as few markers as the rules allow (one, in plain Nim).
+    public long takeOneMove(RandomGenerator random) {
+        if (movablePiles == 0) {
+            return NO_MOVE;
+        }
+        int pile = movableTree.find(random.nextInt(movablePiles));
+        return move(pile, rules.nthMove(piles[pile], 0));
+    }
+
+    // The computer's strategy: play the winning move when there is one, otherwise a random move.
+    public long bestMove(RandomGenerator random) {
+        long move = winningMove();
+        return move != NO_MOVE ? move : randomMove(random);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(piles);
+    }
+}
@@ -0,0 +1,320 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Rules for octal games (Nim variants played on heaps) together with their Sprague-Grundy values.
+// An octal code such as "0.137" lists, for k = 1, 2, 3, ..., what a player may do after removing k markers from a heap:
+// bit 1 - take the whole heap, bit 2 - leave one smaller heap, bit 4 - leave two non-empty heaps (split it).
+// Examples: "0.333" is "take at most 3", "0.77" is Kayles, "0.07" is Dawson's Kayles and "0.137" is Dawson's Chess.
+// Plain Nim has no finite code and is the NIM instance, whose Grundy value is simply the heap size.
+//
+// Grundy values are computed bottom-up into an int[] using a bitset for the mex, and each game's table is cached and
+// shared by every engine, thread and tournament that plays it.
+//
+// Most octal games with finite codes are eventually periodic. Each time the table grows it is checked for a pre-period
+// e and period p using the Guy-Smith theorem: if g(n + p) = g(n) for every e <= n < 2e + p + t, where t is the largest
+// number of markers a move removes, then g(n + p) = g(n) for every n >= e. Once that holds the table stops growing and
+// every larger heap is answered by a modular lookup, so heaps of any size cost O(1).
+public final class OctalGame {
+
+    public static final OctalGame NIM = new OctalGame("nim", new int[0], true);
+
+    // The variants parse accepts, for usage messages.
+    public static final String VARIANTS = "nim, take-at-most-N or an octal code of digits 0-3, e.g. 0.333";
+
+    // Largest table computed while no period has been found. Splitting moves make every value cost O(n), so games
+    // with them (some of which, like 0.6, have no known period) get a smaller limit.
+    private static final int MAX_TABLE = 1 << 24;
+    private static final int MAX_SPLITTING_TABLE = 1 << 15;
+
+    private static final ConcurrentMap<String, OctalGame> CACHE = new ConcurrentHashMap<>();
+
+    private final String code;
+    private final int[] digits;        // digits[k] for k = 1..maxTake; digits[0] is unused
+    private final boolean nim;
+    private final boolean splits;
+    private final int largeHeapMoves;  // legal non-splitting moves from any heap larger than maxTake
+    private final int maxTable;
+
+    // Grundy values of heaps 0..table.length-1, and the period once proven. Replaced as a whole when the table grows.
+    private record Values(int[] table, int prePeriod, int period) {
+    }
+
+    private volatile Values values = new Values(new int[]{0}, 0, 0);
+    private long[] mexScratch = new long[1];
+
+    private OctalGame(String code, int[] digits, boolean nim) {
+        this.code = code;
+        this.digits = digits;
+        this.nim = nim;
+        boolean split = false;
+        int moves = 0;
+        for (int k = 1; k < digits.length; k++) {
+            split |= (digits[k] & 4) != 0;
+            if ((digits[k] & 2) != 0) {
+                moves++;
+            }
+        }
+        this.splits = split;
+        this.largeHeapMoves = moves;
+        this.maxTable = split ? MAX_SPLITTING_TABLE : MAX_TABLE;
+    }
+
+    // Returns the shared instance for an octal code like "0.77". Trailing zero digits are ignored.
+    public static OctalGame of(String code) {
+        String normalized = normalize(code);
+        return CACHE.computeIfAbsent(normalized, c -> new OctalGame(c, parseDigits(c), false));
+    }
+
+    // "Take at most maxTake markers from one heap".
+    public static OctalGame subtraction(int maxTake) {
+        if (maxTake < 1) {
+            throw new IllegalArgumentException("maxTake must be positive: " + maxTake);
+        }
+        return of("0." + "3".repeat(maxTake));
+    }
+
+    public static OctalGame kayles() {
+        return of("0.77");
+    }
+
+    public static OctalGame dawsonsKayles() {
+        return of("0.07");
+    }
+
+    public static OctalGame dawsonsChess() {
+        return of("0.137");
+    }
+
+    // Parses the variant names accepted on the command line and by the servers: nim, take-at-most-N or an octal code
+    // whose digits are all 0-3, such as 0.333. Only games whose moves never split a heap can be played on fixed piles,
+    // so codes like Kayles' 0.77 are refused here with a message that says so, rather than later by NimEngine.
+    public static OctalGame parse(String name) {
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        if (lower.equals("nim")) {
+            return NIM;
+        } else if (lower.startsWith("take-at-most-")) {
+            return subtraction(Integer.parseInt(lower.substring("take-at-most-".length())));
+        } else if (!lower.startsWith("0.")) {
+            throw new IllegalArgumentException("Unknown variant " + name + "; use " + VARIANTS);
+        }
+        OctalGame rules = of(lower);
+        if (rules.splits()) {
+            throw new IllegalArgumentException(rules + " splits heaps and cannot be played; use " + VARIANTS);
+        }
+        return rules;
+    }
+
+    private static String normalize(String code) {
+        String trimmed = code.trim();
+        if (!trimmed.matches("0\\.[0-7]+")) {
+            throw new IllegalArgumentException("Not an octal game code: " + code);
+        }
+        int end = trimmed.length();
+        while (end > 2 && trimmed.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (end == 2) {
+            throw new IllegalArgumentException("Octal code allows no moves: " + code);
+        }
+        return trimmed.substring(0, end);
+    }
+
+    private static int[] parseDigits(String code) {
+        int[] digits = new int[code.length() - 1];
+        for (int k = 1; k < digits.length; k++) {
+            digits[k] = code.charAt(k + 1) - '0';
+        }
+        return digits;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public boolean isNim() {
+        return nim;
+    }
+
+    // True if some move splits a heap in two, which a fixed set of piles cannot represent.
+    public boolean splits() {
+        return splits;
+    }
+
+    // Largest number of markers a single move may remove, or Long.MAX_VALUE for plain Nim.
+    public long maxTake() {
+        return nim ? Long.MAX_VALUE : digits.length - 1;
+    }
+
+    // Whether removing count markers from a heap of the given size, leaving at most one heap, is legal.
+    public boolean allows(long heap, long count) {
+        if (nim) {
+            return count > 0 && count <= heap;
+        }
+        if (count < 1 || count >= digits.length || count > heap) {
+            return false;
+        }
+        int digit = digits[(int) count];
+        return count == heap ? (digit & 1) != 0 : (digit & 2) != 0;
+    }
+
+    // Number of legal non-splitting moves from a heap.
+    public long legalMoveCount(long heap) {
+        if (nim) {
+            return heap;
+        }
+        if (heap >= digits.length) {
+            return largeHeapMoves;
+        }
+        int moves = 0;
+        for (int k = 1; k <= heap; k++) {
+            if (allows(heap, k)) {
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+    // The number of markers removed by the index-th (0-based, in increasing order) legal move from a heap.
+    public long nthMove(long heap, long index) {
+        if (nim) {
+            return index + 1;
+        }
+        long seen = 0;
+        for (int k = 1; k < digits.length && k <= heap; k++) {
+            if (allows(heap, k) && seen++ == index) {
+                return k;
+            }
+        }
+        throw new IllegalArgumentException("Heap " + heap + " has no legal move number " + index);
+    }
+
+    // The smallest legal removal from a heap that leaves a heap with the target Grundy value, or -1 if there is none.
+    public long moveToGrundy(long heap, long target) {
+        if (nim) {
+            return target < heap ? heap - target : -1;
+        }
+        for (int k = 1; k < digits.length && k <= heap; k++) {
+            if (allows(heap, k) && grundy(heap - k) == target) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    // The Sprague-Grundy value of a single heap.
+    public long grundy(long heap) {
+        if (nim) {
+            return heap;
+        }
+        Values v = values;
+        if (heap < v.table.length) {
+            return v.table[(int) heap];
+        }
+        if (v.period == 0) {
+            v = extend(heap);
+            if (heap < v.table.length) {
+                return v.table[(int) heap];
+            }
+        }
+        return v.table[(int) (v.prePeriod + (heap - v.prePeriod) % v.period)];
+    }
+
+    // Start of the periodic part of the Grundy sequence, once a period has been proven (0 otherwise).
+    public long prePeriod() {
+        return nim ? 0 : values.prePeriod;
+    }
+
+    // Length of the proven period of the Grundy sequence, or 0 if none has been found (plain Nim never has one).
+    public long period() {
+        return nim ? 0 : values.period;
+    }
+
+    // Computes Grundy values until the table covers the heap or a period is proven, doubling the table each time so
+    // that the cost is amortised, and publishes the result.
+    private synchronized Values extend(long heap) {
+        Values v = values;
+        while (heap >= v.table.length && v.period == 0) {
+            int[] table = v.table;
+            if (table.length >= maxTable) {
+                throw new IllegalArgumentException("Heap " + heap + " is beyond the Grundy table of " + code
+                        + ", which has no period up to " + maxTable);
+            }
+            // Grow by doubling even for a huge heap: a period usually shows up long before the heap is reached.
+            int size = Math.min(maxTable, Math.max(64, 2 * table.length));
+            int[] grown = Arrays.copyOf(table, size);
+            for (int n = table.length; n < size; n++) {
+                grown[n] = computeGrundy(grown, n);
+            }
+            v = detectPeriod(grown);
+            values = v;
+        }
+        return v;
+    }
+
+    // Looks for the shortest period the Guy-Smith theorem proves from the computed values. For each candidate period p
+    // the scan runs backwards from the end of the table to find the smallest e from which the values repeat; wrong
+    // candidates usually fail within a few steps, so this is cheap compared with computing the values.
+    private Values detectPeriod(int[] table) {
+        int computed = table.length;
+        int maxTake = digits.length - 1;
+        for (int period = 1; period <= computed / 2; period++) {
+            int prePeriod = computed - period;
+            while (prePeriod > 0 && table[prePeriod - 1] == table[prePeriod - 1 + period]) {
+                prePeriod--;
+            }
+            // The repeat has been checked for prePeriod <= n < computed - period.
+            if (computed - period >= 2L * prePeriod + period + maxTake) {
+                return new Values(Arrays.copyOf(table, prePeriod + period), prePeriod, period);
+            }
+        }
+        return new Values(table, 0, 0);
+    }
+
+    // mex over the Grundy values of every position reachable from a heap of n, using a bitset of seen values.
+    private int computeGrundy(int[] values, int n) {
+        long[] seen = mexScratch;
+        Arrays.fill(seen, 0L);
+        int maxTake = Math.min(digits.length - 1, n);
+        for (int k = 1; k <= maxTake; k++) {
+            int digit = digits[k];
+            int rest = n - k;
+            if (rest == 0) {
+                if ((digit & 1) != 0) {
+                    seen = mark(seen, 0);
+                }
+                continue;
+            }
+            if ((digit & 2) != 0) {
+                seen = mark(seen, values[rest]);
+            }
+            if ((digit & 4) != 0) {
+                for (int a = 1; a <= rest / 2; a++) {
+                    seen = mark(seen, values[a] ^ values[rest - a]);
+                }
+            }
+        }
+        mexScratch = seen;
+        for (int word = 0; word < seen.length; word++) {
+            if (seen[word] != -1L) {
+                return (word << 6) + Long.numberOfTrailingZeros(~seen[word]);
+            }
+        }
+        return seen.length << 6;
+    }
+
+    private static long[] mark(long[] seen, int value) {
+        int word = value >>> 6;
+        if (word >= seen.length) {
+            seen = Arrays.copyOf(seen, Math.max(word + 1, seen.length * 2));
+        }
+        seen[word] |= 1L << value;
+        return seen;
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
+}
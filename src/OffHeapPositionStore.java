@@ -0,0 +1,118 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Open-addressing hash table from packed position keys to small value payloads, stored entirely outside the Java heap.
+// Solver tables with billions of entries would be hopeless as boxed HashMap entries; here an entry is 16 bytes of
+// direct memory and the garbage collector never sees it, so the store can grow to tens of gigabytes without GC pauses.
+//
+// Memory is a series of direct ByteBuffers of up to 1 GiB each (a single buffer is limited to 2 GiB), accessed through
+// VarHandles for atomic compare-and-set. Lookups are lock-free and may run on any number of threads alongside inserts.
+// Entries are never removed. Direct memory is capped by -XX:MaxDirectMemorySize, which defaults to the maximum heap
+// size, so large stores need that flag raised.
+public final class OffHeapPositionStore {
+
+    // Returned by get() when the key is not present.
+    public static final long ABSENT = -1L;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int SLOT_BYTES = 16;            // key, then value
+    private static final int CHUNK_SHIFT = 26;           // 2^26 slots = 1 GiB per buffer
+    private static final long PRESENT = Long.MIN_VALUE;  // set on every stored value, so 0 means "being written"
+
+    private final ByteBuffer[] chunks;
+    private final long mask;
+    private final long capacity;
+    private final LongAdder size = new LongAdder();
+
+    // Allocates room for the given number of entries, rounded up to a power of two.
+    // The table should be kept below about 70% full for short probe sequences.
+    public OffHeapPositionStore(long capacity) {
+        if (capacity < 1 || capacity > 1L << 40) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^40 entries: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Long.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        long chunkSlots = Math.min(this.capacity, 1L << CHUNK_SHIFT);
+        chunks = new ByteBuffer[(int) (this.capacity / chunkSlots)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect((int) (chunkSlots * SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long size() {
+        return size.sum();
+    }
+
+    // Bytes of off-heap memory held by the store.
+    public long memoryBytes() {
+        return capacity * SLOT_BYTES;
+    }
+
+    // Returns the value stored for the key, or ABSENT. Keys must be non-negative.
+    public long get(long key) {
+        long stored = key + 1; // 0 marks an empty slot
+        for (long slot = hash(key) & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            long k = (long) LONGS.getAcquire(chunk, offset);
+            if (k == 0) {
+                return ABSENT;
+            }
+            if (k == stored) {
+                long value = (long) LONGS.getAcquire(chunk, offset + Long.BYTES);
+                return value == 0 ? ABSENT : value & ~PRESENT; // another thread is still writing the value
+            }
+        }
+        return ABSENT;
+    }
+
+    // Stores the value for the key, replacing any previous one. Keys and values must be non-negative.
+    public void put(long key, long value) {
+        if (key < 0 || value < 0) {
+            throw new IllegalArgumentException("Keys and values must be non-negative");
+        }
+        long stored = key + 1;
+        for (long slot = hash(key) & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            long k = (long) LONGS.getAcquire(chunk, offset);
+            if (k == 0) {
+                if (LONGS.compareAndSet(chunk, offset, 0L, stored)) {
+                    size.increment();
+                    LONGS.setRelease(chunk, offset + Long.BYTES, value | PRESENT);
+                    return;
+                }
+                k = (long) LONGS.getAcquire(chunk, offset); // lost the race for this slot; see who won it
+            }
+            if (k == stored) {
+                LONGS.setRelease(chunk, offset + Long.BYTES, value | PRESENT);
+                return;
+            }
+        }
+        throw new IllegalStateException("Position store is full (" + capacity + " entries)");
+    }
+
+    private ByteBuffer chunk(long slot) {
+        return chunks[(int) (slot >>> CHUNK_SHIFT)];
+    }
+
+    private static int offset(long slot) {
+        return (int) (slot & ((1L << CHUNK_SHIFT) - 1)) * SLOT_BYTES;
+    }
+
+    // SplitMix64 finaliser: packed keys differ mostly in their low bits, so spread them over the whole table.
+    private static long hash(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+
+// For every bit position, the set of piles whose size has that bit set.
+// Each set is a hierarchical bitset: one bit per pile at the bottom level, and one bit per non-zero word in each level
+// above it, all stored in a single long[]. Adding, removing and finding any member walk at most four levels for the
+// engine's limit of 8 million piles, so locating a pile for the winning move does not depend on the number of piles.
+// The bitset for a bit position is only allocated the first time a pile uses that bit.
+final class PileBitIndex {
+
+    private final int[] levelOffsets; // start of each level within a set, bottom level first
+    private final int topOffset;      // the single word of the top level
+    private final int setWords;       // total words in one set
+    private final long[][] sets;      // sets[bit], null until the bit is first used
+
+    PileBitIndex(int pileCount) {
+        int levels = 1;
+        for (int words = wordsFor(pileCount); words > 1; words = wordsFor(words)) {
+            levels++;
+        }
+        levelOffsets = new int[levels];
+        int offset = 0;
+        int words = wordsFor(pileCount);
+        for (int level = 0; level < levels; level++) {
+            levelOffsets[level] = offset;
+            offset += words;
+            words = wordsFor(words);
+        }
+        setWords = offset;
+        topOffset = levelOffsets[levels - 1];
+        sets = new long[Long.SIZE][];
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    // Updates the index after a pile changes size from before to after.
+    void update(int pile, long before, long after) {
+        long changed = before ^ after;
+        while (changed != 0) {
+            int bit = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            if ((after & (1L << bit)) != 0) {
+                add(bit, pile);
+            } else {
+                remove(bit, pile);
+            }
+        }
+    }
+
+    void clear() {
+        for (long[] set : sets) {
+            if (set != null) {
+                Arrays.fill(set, 0L);
+            }
+        }
+    }
+
+    // Returns some pile whose size has the given bit set, or -1 if there is none.
+    int anyPileWithBit(int bit) {
+        long[] set = sets[bit];
+        if (set == null || set[topOffset] == 0) {
+            return -1;
+        }
+        int index = 0;
+        for (int level = levelOffsets.length - 1; level >= 0; level--) {
+            index = (index << 6) | Long.numberOfTrailingZeros(set[levelOffsets[level] + index]);
+        }
+        return index;
+    }
+
+    private void add(int bit, int pile) {
+        long[] set = sets[bit];
+        if (set == null) {
+            set = new long[setWords];
+            sets[bit] = set;
+        }
+        int index = pile;
+        for (int offset : levelOffsets) {
+            int word = offset + (index >>> 6);
+            boolean wasEmpty = set[word] == 0;
+            set[word] |= 1L << index;
+            if (!wasEmpty) {
+                break; // the levels above already know this word is non-empty
+            }
+            index >>>= 6;
+        }
+    }
+
+    private void remove(int bit, int pile) {
+        long[] set = sets[bit];
+        int index = pile;
+        for (int offset : levelOffsets) {
+            int word = offset + (index >>> 6);
+            set[word] &= ~(1L << index);
+            if (set[word] != 0) {
+                break; // the word still has members, so the levels above are unchanged
+            }
+            index >>>= 6;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.SplittableRandom;
+
+// Draws every marker of every pile, for variants with piles far larger than a button label can show. Each pile is a
+// horizontal band of round markers laid out in rows, with its name and count above it.
+//
+// A marker is drawn once into a sprite, and a full row of markers once into a row sprite, both kept in VolatileImages
+// (re-rendered when the graphics device loses them), so painting a pile of 10,000 markers takes about a hundred image
+// copies. After a move only the rows whose markers changed, and the pile's label, are repainted. Removals can be
+// animated: the removed markers fade out over FADE_MILLIS, again repainting only their rows on each frame.
+//
+// Piles too large to draw marker by marker fill their band and show the rest in the count. Every band is at least
+// MIN_BAND pixels high; when there are more piles than fit at that height, the view asks for the height they need and
+// scrolls, so put it in a JScrollPane wherever the pile count is not fixed.
+//
+// Usage: java PileView [piles, e.g. 4000,3500,4500]   (a self-playing demo that reports frames per second)
+public final class PileView extends JComponent implements Scrollable {
+
+    private static final int LABEL_HEIGHT = 16;
+    private static final int MIN_CELL = 3;
+    private static final int MIN_BAND = LABEL_HEIGHT + MIN_CELL;
+    private static final int MAX_CELL = 24;
+    private static final long FADE_MILLIS = 400;
+    private static final Color[] PALETTE = {Color.GREEN, Color.YELLOW, new Color(255, 153, 0), Color.CYAN,
+            Color.MAGENTA, Color.PINK, Color.LIGHT_GRAY, new Color(150, 120, 255)};
+    private static final String[] NAMES = {"Green", "Yellow", "Orange"};
+
+    private final NimEngine engine;
+    private final long[] shown;      // markers drawn solid in each pile
+    private final long[] fadingTo;   // markers shown[i] .. fadingTo[i] are fading out; equal to shown[i] otherwise
+    private final long[] fadeStart;  // nanoTime the pile's fade began
+    private final Timer animation = new Timer(16, e -> animate());
+    private long scale;              // the largest pile seen, which the layout has room for
+    private int cell;                // marker size in pixels
+    private int columns;             // markers per row
+    private int rows;                // rows per band
+    private int bandHeight;
+    private int layoutWidth = -1, layoutHeight = -1;
+    private Image[] markerSprites;   // per pile
+    private Image[] rowSprites;      // per pile, one full row of markers
+    private boolean rendered;        // set by validSprite
+    private long paints;
+    private long paintNanos;
+    private Rectangle dirty;         // the union of the regions repainted since takeDirtyRegion, for measuring
+
+    public PileView(NimEngine engine) {
+        this.engine = engine;
+        int n = engine.pileCount();
+        shown = engine.piles();
+        fadingTo = engine.piles();
+        fadeStart = new long[n];
+        for (long pile : shown) {
+            scale = Math.max(scale, pile);
+        }
+        markerSprites = new Image[n];
+        rowSprites = new Image[n];
+        setOpaque(true);
+        setBackground(Color.DARK_GRAY);
+        setPreferredSize(new Dimension(480, Math.min(720, 96 * n)));
+    }
+
+    // Brings the view up to date with the engine, repainting only the piles that changed. With animate set, markers
+    // that were removed fade out rather than vanish.
+    public void refresh(boolean animate) {
+        boolean relayout = false;
+        for (int i = 0; i < shown.length; i++) {
+            long now = engine.pile(i);
+            long before = shown[i];
+            if (now == before) {
+                continue;
+            }
+            if (now > scale) {
+                scale = now;
+                relayout = true;
+            }
+            long dirtyTo = Math.max(Math.max(before, now), fadingTo[i]); // a fade still running ends now
+            shown[i] = now;
+            if (animate && now < before) {
+                fadingTo[i] = before;
+                fadeStart[i] = System.nanoTime();
+                animation.start();
+            } else {
+                fadingTo[i] = now;
+            }
+            repaintMarkers(i, Math.min(before, now), dirtyTo);
+            repaint(0, bandTop(i), getWidth(), LABEL_HEIGHT);
+        }
+        if (relayout) {
+            layoutWidth = -1;
+            repaint();
+        }
+    }
+
+    // Frames painted so far and the time spent painting them, for measuring.
+    public long paints() {
+        return paints;
+    }
+
+    public long paintNanos() {
+        return paintNanos;
+    }
+
+    // The region that repaints have asked for since the last call, or null if none: what the RepaintManager would
+    // paint, for measuring without a screen.
+    Rectangle takeDirtyRegion() {
+        Rectangle region = dirty;
+        dirty = null;
+        return region;
+    }
+
+    @Override
+    public void repaint(long delay, int x, int y, int width, int height) {
+        Rectangle region = new Rectangle(x, y, width, height);
+        dirty = dirty == null ? region : dirty.union(region);
+        super.repaint(delay, x, y, width, height);
+    }
+
+    // At least the set preferred size, and tall enough for every band at MIN_BAND.
+    @Override
+    public Dimension getPreferredSize() {
+        Dimension size = super.getPreferredSize();
+        return new Dimension(size.width, Math.max(size.height, shown.length * MIN_BAND));
+    }
+
+    // In a scroll pane, the view shows the set preferred size, not the height every band needs.
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return super.getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visible, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? Math.max(bandHeight, 1) : MAX_CELL;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visible, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visible.height : visible.width;
+    }
+
+    // Markers wrap to the width, so the view never scrolls sideways.
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    // The bands stretch to fill the viewport when they all fit in it at MIN_BAND, and scroll when they do not.
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport viewport && viewport.getHeight() >= shown.length * MIN_BAND;
+    }
+
+    private void animate() {
+        long now = System.nanoTime();
+        boolean fading = false;
+        for (int i = 0; i < shown.length; i++) {
+            if (fadingTo[i] == shown[i]) {
+                continue;
+            }
+            repaintMarkers(i, shown[i], fadingTo[i]);
+            if (now - fadeStart[i] >= FADE_MILLIS * 1_000_000L) {
+                fadingTo[i] = shown[i];
+            } else {
+                fading = true;
+            }
+        }
+        if (!fading) {
+            animation.stop();
+        }
+    }
+
+    // Repaints the rows holding markers from (inclusive) to to (exclusive) of the pile.
+    private void repaintMarkers(int pile, long from, long to) {
+        ensureLayout();
+        if (to <= from || columns == 0) {
+            return;
+        }
+        long lastRow = Math.min((to - 1) / columns, rows - 1);
+        long firstRow = Math.min(from / columns, lastRow);
+        int top = bandTop(pile) + LABEL_HEIGHT;
+        repaint(0, top + (int) firstRow * cell, getWidth(), (int) (lastRow - firstRow + 1) * cell);
+    }
+
+    private int bandTop(int pile) {
+        ensureLayout();
+        return pile * bandHeight;
+    }
+
+    // Fits the largest pile into a band: the biggest cell, up to MAX_CELL, that holds it, but never under MIN_CELL.
+    private void ensureLayout() {
+        int width = Math.max(getWidth(), 1);
+        int height = Math.max(getHeight(), 1);
+        if (width == layoutWidth && height == layoutHeight) {
+            return;
+        }
+        layoutWidth = width;
+        layoutHeight = height;
+        bandHeight = Math.max(height / shown.length, MIN_BAND);
+        int area = bandHeight - LABEL_HEIGHT;
+        cell = MAX_CELL;
+        while (cell > MIN_CELL && (long) (width / cell) * (area / cell) < scale) {
+            cell--;
+        }
+        columns = Math.max(width / cell, 1);
+        rows = Math.max(area / cell, 1);
+        markerSprites = new Image[shown.length];
+        rowSprites = new Image[shown.length];
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        long start = System.nanoTime();
+        ensureLayout();
+        Graphics2D g = (Graphics2D) graphics;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.setFont(getFont() != null ? getFont() : new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+
+        boolean lost = false;
+        int firstPile = Math.max(clip.y / bandHeight, 0);
+        int lastPile = Math.min((clip.y + clip.height - 1) / bandHeight, shown.length - 1);
+        for (int i = firstPile; i <= lastPile; i++) {
+            int top = bandTop(i);
+            if (clip.y < top + LABEL_HEIGHT) {
+                g.setColor(Color.WHITE);
+                String name = i < NAMES.length && shown.length == NAMES.length ? NAMES[i] : "Pile " + (i + 1);
+                g.drawString(name + ": " + shown[i], 4, top + LABEL_HEIGHT - 4);
+            }
+            Image row = rowSprite(i);
+            int markersTop = top + LABEL_HEIGHT;
+            int firstRow = Math.max((clip.y - markersTop) / cell, 0);
+            int lastRow = Math.min((clip.y + clip.height - 1 - markersTop) / cell, rows - 1);
+            drawRows(g, row, markersTop, firstRow, lastRow, 0, shown[i]);
+            if (fadingTo[i] > shown[i]) {
+                float progress = (System.nanoTime() - fadeStart[i]) / (FADE_MILLIS * 1e6f);
+                Composite composite = g.getComposite();
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, Math.max(0f, 1f - progress)));
+                drawRows(g, row, markersTop, firstRow, lastRow, shown[i], fadingTo[i]);
+                g.setComposite(composite);
+            }
+            lost |= row instanceof VolatileImage image && image.contentsLost();
+        }
+        if (lost) {
+            repaint(); // the sprites were lost while we drew with them; they are restored on the next paint
+        }
+        paints++;
+        paintNanos += System.nanoTime() - start;
+    }
+
+    // Draws markers from (inclusive) to to (exclusive) that fall in the given rows, one image copy per row.
+    private void drawRows(Graphics2D g, Image row, int markersTop, int firstRow, int lastRow, long from, long to) {
+        for (int r = firstRow; r <= lastRow; r++) {
+            long rowStart = (long) r * columns;
+            long a = Math.max(from, rowStart);
+            long b = Math.min(to, rowStart + columns);
+            if (a >= b) {
+                continue;
+            }
+            int x1 = (int) (a - rowStart) * cell;
+            int x2 = (int) (b - rowStart) * cell;
+            int y = markersTop + r * cell;
+            g.drawImage(row, x1, y, x2, y + cell, x1, 0, x2, cell, null);
+        }
+    }
+
+    private Image rowSprite(int pile) {
+        markerSprites[pile] = validSprite(markerSprites[pile], cell, cell, pile, false);
+        Image row = rendered ? null : rowSprites[pile]; // a re-rendered marker means re-rendering the row too
+        return rowSprites[pile] = validSprite(row, columns * cell, cell, pile, true);
+    }
+
+    // Returns the sprite, creating or re-rendering it (and setting rendered) if the device dropped it. Falls back to a BufferedImage where
+    // there is no screen to accelerate, e.g. when rendering headless.
+    private Image validSprite(Image sprite, int width, int height, int pile, boolean row) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        rendered = true;
+        if (configuration == null) {
+            if (sprite instanceof BufferedImage image && image.getWidth() == width) {
+                rendered = false;
+                return sprite;
+            }
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            render(image.createGraphics(), pile, row);
+            return image;
+        }
+        VolatileImage image = sprite instanceof VolatileImage volatileImage ? volatileImage : null;
+        int status = image == null ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(configuration);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            image = configuration.createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT);
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED) {
+            Graphics2D g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.setComposite(AlphaComposite.SrcOver);
+            render(g, pile, row);
+        } else {
+            rendered = false;
+        }
+        return image;
+    }
+
+    private void render(Graphics2D g, int pile, boolean row) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (row) {
+            for (int c = 0; c < columns; c++) {
+                g.drawImage(markerSprites[pile], c * cell, 0, null);
+            }
+        } else {
+            int inset = cell >= 6 ? 1 : 0;
+            g.setColor(PALETTE[pile % PALETTE.length]);
+            g.fillOval(inset, inset, cell - 2 * inset, cell - 2 * inset);
+            if (cell >= 8) {
+                g.setColor(PALETTE[pile % PALETTE.length].darker());
+                g.drawOval(inset, inset, cell - 2 * inset - 1, cell - 2 * inset - 1);
+            }
+        }
+        g.dispose();
+    }
+
+    public static void main(String[] args) {
+        long[] piles = args.length > 0 ? NimEngine.parsePiles(args[0]) : new long[]{4000, 3500, 4500};
+        NimEngine engine = new NimEngine(piles);
+        if (GraphicsEnvironment.isHeadless()) {
+            benchmarkHeadless(engine);
+            return;
+        }
+        EdtWatchdog.installFromProperty();
+        SwingUtilities.invokeLater(() -> {
+            PileView view = new PileView(engine);
+            view.setPreferredSize(new Dimension(960, 720));
+            JFrame frame = new JFrame("PileView " + engine);
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(new JScrollPane(view));
+            frame.pack();
+            frame.setVisible(true);
+
+            // Takes a random bite out of a random pile four times a second, animated, and starts over at the end.
+            SplittableRandom random = new SplittableRandom(42);
+            new Timer(250, e -> {
+                if (engine.isGameOver()) {
+                    engine.reset();
+                    view.refresh(false);
+                } else {
+                    engine.apply(engine.randomMove(random));
+                    view.refresh(true);
+                }
+            }).start();
+            long[] last = {0, 0};
+            new Timer(1000, e -> {
+                long paints = view.paints() - last[0];
+                long nanos = view.paintNanos() - last[1];
+                last[0] = view.paints();
+                last[1] = view.paintNanos();
+                System.out.printf("%d frames/sec, %.2f ms per frame painting %s%n", paints,
+                        paints == 0 ? 0 : nanos / 1e6 / paints, engine);
+            }).start();
+        });
+    }
+
+    // Without a screen: times full repaints, and moves followed by refresh and a repaint of the region it dirtied,
+    // into an offscreen image as tall as every band needs.
+    private static void benchmarkHeadless(NimEngine engine) {
+        PileView view = new PileView(engine);
+        int height = Math.max(720, view.getPreferredSize().height);
+        view.setSize(960, height);
+        BufferedImage frame = new BufferedImage(960, height, BufferedImage.TYPE_INT_RGB);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int frames = 200;
+            for (int f = 0; f < frames; f++) {
+                Graphics2D g = frame.createGraphics();
+                view.paint(g);
+                g.dispose();
+            }
+            double full = (System.nanoTime() - start) / 1e6 / frames;
+
+            // A move dirties a few rows of one pile; refresh works out which, and only that region is painted, as
+            // the RepaintManager would.
+            view.takeDirtyRegion();
+            start = System.nanoTime();
+            long area = 0;
+            for (int f = 0; f < frames; f++) {
+                if (engine.isGameOver()) {
+                    engine.reset();
+                }
+                int pile = random.nextInt(engine.pileCount());
+                long before = engine.pile(pile);
+                if (before > 0) {
+                    engine.apply(pile, 1 + random.nextLong(Math.min(before, 50)));
+                }
+                view.refresh(false);
+                Rectangle region = view.takeDirtyRegion();
+                if (region == null) {
+                    continue;
+                }
+                area += (long) region.width * region.height;
+                Graphics2D g = frame.createGraphics();
+                g.setClip(region);
+                view.paint(g);
+                g.dispose();
+            }
+            double dirty = (System.nanoTime() - start) / 1e6 / frames;
+            System.out.printf("%s, %,d markers: full repaint %.2f ms, move and dirty region %.3f ms, %.1f%% of the view"
+                    + " (%d px cells, %d per row)%n", engine, engine.markersLeft(), full, dirty,
+                    100.0 * area / frames / (960L * height), view.cell, view.columns);
+        }
+    }
+}
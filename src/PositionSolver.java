@@ -0,0 +1,222 @@
+import java.util.Arrays;
+
+// Exact solver for positions with any fixed number of piles, memoised in an OffHeapPositionStore. HintService solves
+// the Nim window's positions beyond the tablebase with one.
+// This is the search behind Nim.solveNim taken to its conclusion: instead of the nim-sum shortcut it plays out every
+// line, so it also yields the distance to the end of the game with best play (the winner hurrying, the loser holding
+// out) for positions far beyond what a Tablebase file can enumerate, and works for any rules where the theory gives
+// only the winner.
+//
+// Positions are canonicalised by sorting the piles, since the order of the piles does not change the game, and packed
+// into one key with 63 / pileCount bits per pile. Each solved position costs one 16-byte slot of off-heap memory.
+//
+// A solver keeps scratch state and is used by one thread at a time; solvers on different threads can share one store,
+// and each then reuses whatever the others have already solved. The search recurses once per move played, so the
+// total number of markers bounds the stack depth.
+//
+// Usage: java PositionSolver <variant> <pile> <pile> ...
+public final class PositionSolver {
+
+    private static final long DISTANCE_MASK = (1L << 32) - 1;
+    private static final long WIN = 1L << 32;
+
+    private final OctalGame rules;
+    private final int pileCount;
+    private final int bitsPerPile;
+    private final OffHeapPositionStore store;
+    private final long[] sorted;
+
+    public PositionSolver(OctalGame rules, int pileCount, OffHeapPositionStore store) {
+        if (rules.splits()) {
+            throw new IllegalArgumentException("Variants that split heaps are not supported: " + rules);
+        }
+        if (pileCount < 1 || pileCount > Long.SIZE - 1) {
+            throw new IllegalArgumentException("Pile count must be between 1 and 63: " + pileCount);
+        }
+        this.rules = rules;
+        this.pileCount = pileCount;
+        this.bitsPerPile = (Long.SIZE - 1) / pileCount;
+        this.store = store;
+        this.sorted = new long[pileCount];
+    }
+
+    public OctalGame rules() {
+        return rules;
+    }
+
+    public int pileCount() {
+        return pileCount;
+    }
+
+    public OffHeapPositionStore store() {
+        return store;
+    }
+
+    // Largest pile that fits in a packed key.
+    public long maxPile() {
+        return (1L << bitsPerPile) - 1;
+    }
+
+    // True if the engine plays these rules on this many piles and every pile fits in a key.
+    public boolean covers(NimEngine engine) {
+        if (engine.rules() != rules || engine.pileCount() != pileCount) {
+            return false;
+        }
+        for (int i = 0; i < pileCount; i++) {
+            if (engine.pile(i) > maxPile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether the player to move wins the given position against perfect play.
+    public boolean isWin(long[] piles) {
+        return (solve(checked(piles)) & WIN) != 0;
+    }
+
+    // Moves until the end of the game with best play from the given position.
+    public int distance(long[] piles) {
+        return (int) (solve(checked(piles)) & DISTANCE_MASK);
+    }
+
+    // The quickest winning move if the player to move is winning, otherwise the move that delays the loss the longest.
+    // Returns NimEngine.NO_MOVE if the position is not covered or the game is over.
+    public long bestMove(NimEngine engine) {
+        if (!covers(engine) || engine.isGameOver()) {
+            return NimEngine.NO_MOVE;
+        }
+        long[] piles = new long[pileCount];
+        for (int i = 0; i < pileCount; i++) {
+            piles[i] = engine.pile(i);
+        }
+        boolean winning = (solve(piles) & WIN) != 0;
+        long best = NimEngine.NO_MOVE;
+        long bestDistance = winning ? Long.MAX_VALUE : -1;
+        for (int i = 0; i < pileCount; i++) {
+            long pile = piles[i];
+            for (long k = 1; k <= Math.min(pile, rules.maxTake()); k++) {
+                if (!rules.allows(pile, k)) {
+                    continue;
+                }
+                piles[i] = pile - k;
+                long child = solve(piles);
+                piles[i] = pile;
+                long childDistance = child & DISTANCE_MASK;
+                if (winning ? (child & WIN) == 0 && childDistance < bestDistance : childDistance > bestDistance) {
+                    best = NimEngine.move(i, k);
+                    bestDistance = childDistance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private long[] checked(long[] piles) {
+        if (piles.length != pileCount) {
+            throw new IllegalArgumentException("Expected " + pileCount + " piles, got " + piles.length);
+        }
+        long[] copy = piles.clone();
+        for (long pile : copy) {
+            if (pile < 0 || pile > maxPile()) {
+                throw new IllegalArgumentException("Pile sizes must be between 0 and " + maxPile() + ": " + pile);
+            }
+        }
+        return copy;
+    }
+
+    // Returns WIN | distance for the position, solving it and everything below it on first use. The piles are
+    // changed during the search and restored before returning.
+    private long solve(long[] piles) {
+        long key = key(piles);
+        long known = store.get(key);
+        if (known != OffHeapPositionStore.ABSENT) {
+            return known;
+        }
+        long quickestWin = Long.MAX_VALUE; // over successors that are lost for the opponent
+        long slowest = -1;                 // over all successors
+        for (int i = 0; i < pileCount; i++) {
+            long pile = piles[i];
+            for (long k = 1; k <= Math.min(pile, rules.maxTake()); k++) {
+                if (!rules.allows(pile, k)) {
+                    continue;
+                }
+                piles[i] = pile - k;
+                long child = solve(piles);
+                piles[i] = pile;
+                long childDistance = child & DISTANCE_MASK;
+                if ((child & WIN) == 0) {
+                    quickestWin = Math.min(quickestWin, childDistance);
+                }
+                slowest = Math.max(slowest, childDistance);
+            }
+        }
+        long result;
+        if (quickestWin != Long.MAX_VALUE) {
+            result = WIN | (quickestWin + 1);
+        } else {
+            result = slowest + 1; // a position with no moves is lost with distance 0
+        }
+        store.put(key, result);
+        return result;
+    }
+
+    // Sorts a copy of the piles into scratch space and packs them, smallest pile in the lowest bits.
+    // Insertion sort: pile counts are small and this runs once per move searched.
+    private long key(long[] piles) {
+        long[] s = sorted;
+        for (int i = 0; i < pileCount; i++) {
+            long pile = piles[i];
+            int j = i;
+            while (j > 0 && s[j - 1] > pile) {
+                s[j] = s[j - 1];
+                j--;
+            }
+            s[j] = pile;
+        }
+        long key = 0;
+        for (int i = 0; i < pileCount; i++) {
+            key |= s[i] << (i * bitsPerPile);
+        }
+        return key;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java PositionSolver <variant> <pile> <pile> ...");
+            return;
+        }
+        OctalGame rules = OctalGame.parse(args[0]);
+        long[] piles = new long[args.length - 1];
+        for (int i = 0; i < piles.length; i++) {
+            piles[i] = Long.parseLong(args[i + 1]);
+        }
+        // At most product of (pile + 1) positions are reachable; size the table at twice that so probes stay short.
+        double positions = 1;
+        for (long pile : piles) {
+            positions *= pile + 1;
+        }
+        long capacity = (long) Math.min(1L << 28, Math.max(1 << 16, 2 * positions));
+        OffHeapPositionStore store = new OffHeapPositionStore(capacity);
+        PositionSolver solver = new PositionSolver(rules, piles.length, store);
+        NimEngine engine = new NimEngine(rules, piles);
+
+        // The search recurses once per move, so run it on a thread with room for long games.
+        Runnable solve = () -> {
+            long start = System.nanoTime();
+            boolean win = solver.isWin(piles);
+            int distance = solver.distance(piles);
+            long move = solver.bestMove(engine);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s %s: %s in %d moves%n", rules, Arrays.toString(piles), win ? "win" : "loss", distance);
+            if (move != NimEngine.NO_MOVE) {
+                System.out.printf("Best move: take %d from pile %d%n", NimEngine.moveCount(move), NimEngine.movePile(move) + 1);
+            }
+            System.out.printf("%,d positions solved in %.2f s, %,d MiB off-heap%n",
+                    store.size(), seconds, store.memoryBytes() >> 20);
+        };
+        Thread thread = new Thread(null, solve, "solver", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Learns a move policy for a variant by self-play Q-learning, for rules with no closed-form strategy (or none trusted),
+// and exports it as a LearnedPolicy file for the computer player.
+//
+// The positions are those of pileCount piles of at most bound markers, numbered as in Tablebase, and an action is a
+// pile and a count, so the action values fit in one float[] of positions x actions. Both sides share the table: a move
+// is worth +1 if it leaves the opponent without a move, and otherwise minus the best value the opponent has in the
+// position it leads to (negamax Q-learning), so the same values serve whichever side is to move.
+//
+// Episodes start from random positions, to reach the whole table, and explore epsilon-greedily. Worker threads update
+// the shared table without locks ("Hogwild"): a float store is atomic, so a race can only lose an update, which costs a
+// sample rather than corrupting the table, and as episodes wander over a large table two workers seldom touch the same
+// entry at once. Each worker has its own SplittableRandom and counts episodes in a LongAdder, so nothing else is
+// shared and throughput grows with the cores.
+//
+// While training the values are scored against the Grundy values, which this repository can compute for any
+// non-splitting octal game: the share of winning positions whose learned move is a winning one.
+//
+// The default table, three piles up to 63, is the Double Trouble board beyond the endgame tablebase's bound of 31: the
+// computer asks the tablebase first, so a policy for positions it covers would never be played.
+//
+// Usage: java QLearningTrainer <output file> [variant] [piles] [bound] [seconds] [threads]
+//        java QLearningTrainer scale [variant] [piles] [bound]   (episodes/sec for 1, 2, 4, ... threads)
+public final class QLearningTrainer {
+
+    private static final double LEARNING_RATE = 0.3;
+    private static final double EXPLORATION = 0.2;
+    private static final int EPISODES_PER_COUNT = 256; // episodes a worker plays between updates of the counter
+
+    private final OctalGame rules;
+    private final int pileCount;
+    private final int bound;
+    private final int maxCount;     // largest count any move removes
+    private final int actions;      // pileCount * maxCount
+    private final int[] strides;
+    private final int positions;
+    private final boolean[] allowed; // allowed[heap * (maxCount + 1) + count]
+    private final float[] values;    // values[position * actions + action], shared by the workers without locks
+    private final LongAdder episodes = new LongAdder();
+
+    private volatile boolean stopped;
+    private ExecutorService workers;
+
+    public QLearningTrainer(OctalGame rules, int pileCount, int bound) {
+        if (rules.splits()) {
+            throw new IllegalArgumentException("Variants that split heaps are not supported: " + rules);
+        }
+        this.rules = rules;
+        this.pileCount = pileCount;
+        this.bound = bound;
+        this.maxCount = (int) Math.min(bound, rules.maxTake());
+        this.actions = pileCount * maxCount;
+        double size = Math.pow(bound + 1, pileCount);
+        if (pileCount < 1 || bound < 1 || actions > Short.MAX_VALUE || size * actions > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A table of " + pileCount + " piles up to " + bound + " is too large");
+        }
+        this.positions = (int) size;
+        this.strides = new int[pileCount];
+        for (int i = 0, stride = 1; i < pileCount; i++, stride *= bound + 1) {
+            strides[i] = stride;
+        }
+        allowed = new boolean[(bound + 1) * (maxCount + 1)];
+        for (int heap = 0; heap <= bound; heap++) {
+            for (int count = 1; count <= maxCount; count++) {
+                allowed[heap * (maxCount + 1) + count] = rules.allows(heap, count);
+            }
+        }
+        values = new float[positions * actions];
+    }
+
+    // Starts training on the given number of threads; it continues until stop().
+    public void start(int threads, long seed) {
+        if (workers != null) {
+            throw new IllegalStateException("Already training");
+        }
+        stopped = false;
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "q-learning");
+            thread.setDaemon(true);
+            return thread;
+        });
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom workerRandom = random.split();
+            workers.execute(() -> train(workerRandom));
+        }
+    }
+
+    public void stop() throws InterruptedException {
+        stopped = true;
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        workers = null;
+    }
+
+    public long episodes() {
+        return episodes.sum();
+    }
+
+    private void train(SplittableRandom random) {
+        int[] piles = new int[pileCount];
+        int[] legal = new int[actions];
+        int[] next = new int[actions];
+        while (!stopped) {
+            for (int episode = 0; episode < EPISODES_PER_COUNT; episode++) {
+                int position;
+                int moves;
+                do {
+                    position = 0;
+                    for (int i = 0; i < pileCount; i++) {
+                        piles[i] = random.nextInt(bound + 1);
+                        position += piles[i] * strides[i];
+                    }
+                    moves = legalActions(piles, legal);
+                } while (moves == 0);
+                while (true) {
+                    int action = random.nextDouble() < EXPLORATION ? legal[random.nextInt(moves)] : best(position, legal, moves);
+                    int pile = action / maxCount;
+                    int count = action % maxCount + 1;
+                    piles[pile] -= count;
+                    int after = position - count * strides[pile];
+                    int replies = legalActions(piles, next);
+                    float target = replies == 0 ? 1 : -values[after * actions + best(after, next, replies)];
+                    int at = position * actions + action;
+                    values[at] += (float) (LEARNING_RATE * (target - values[at]));
+                    if (replies == 0) {
+                        break;
+                    }
+                    position = after;
+                    int[] swap = legal;
+                    legal = next;
+                    next = swap;
+                    moves = replies;
+                }
+            }
+            episodes.add(EPISODES_PER_COUNT);
+        }
+    }
+
+    // Fills in the legal actions in the position and returns how many there are.
+    private int legalActions(int[] piles, int[] into) {
+        int n = 0;
+        for (int pile = 0; pile < pileCount; pile++) {
+            int row = piles[pile] * (maxCount + 1);
+            for (int count = 1; count <= maxCount && count <= piles[pile]; count++) {
+                if (allowed[row + count]) {
+                    into[n++] = pile * maxCount + count - 1;
+                }
+            }
+        }
+        return n;
+    }
+
+    // The highest-valued of the given actions.
+    private int best(int position, int[] legal, int moves) {
+        int base = position * actions;
+        int best = legal[0];
+        float bestValue = values[base + best];
+        for (int i = 1; i < moves; i++) {
+            float value = values[base + legal[i]];
+            if (value > bestValue) {
+                best = legal[i];
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    // The greedy move in every position, as LearnedPolicy entries.
+    private short[] policy() {
+        short[] moves = new short[positions];
+        int[] piles = new int[pileCount];
+        int[] legal = new int[actions];
+        for (int position = 0; position < positions; position++) {
+            int n = legalActions(piles, legal);
+            moves[position] = n == 0 ? LearnedPolicy.NO_ENTRY : (short) best(position, legal, n);
+            for (int i = 0; i < pileCount && ++piles[i] > bound; i++) {
+                piles[i] = 0;
+            }
+        }
+        return moves;
+    }
+
+    // Share of winning positions in which the greedy move wins, judged by the Grundy values.
+    public double accuracy() {
+        short[] moves = policy();
+        long[] grundy = new long[bound + 1];
+        for (int heap = 0; heap <= bound; heap++) {
+            grundy[heap] = rules.grundy(heap);
+        }
+        int[] piles = new int[pileCount];
+        long winning = 0;
+        long solved = 0;
+        for (int position = 0; position < positions; position++) {
+            long nimSum = 0;
+            for (int pile : piles) {
+                nimSum ^= grundy[pile];
+            }
+            if (nimSum != 0) {
+                winning++;
+                int pile = moves[position] / maxCount;
+                int count = moves[position] % maxCount + 1;
+                if ((nimSum ^ grundy[piles[pile]] ^ grundy[piles[pile] - count]) == 0) {
+                    solved++;
+                }
+            }
+            for (int i = 0; i < pileCount && ++piles[i] > bound; i++) {
+                piles[i] = 0;
+            }
+        }
+        return winning == 0 ? 1 : (double) solved / winning;
+    }
+
+    public void export(Path file) throws IOException {
+        LearnedPolicy.write(file, rules, pileCount, bound, maxCount, policy());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java QLearningTrainer <output file> [variant] [piles] [bound] [seconds] [threads]");
+            System.err.println("       java QLearningTrainer scale [variant] [piles] [bound]");
+            return;
+        }
+        OctalGame rules = args.length > 1 ? OctalGame.parse(args[1]) : OctalGame.subtraction(3);
+        int pileCount = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int bound = args.length > 3 ? Integer.parseInt(args[3]) : 63;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        if (args[0].equals("scale")) {
+            System.out.printf("%s, %d piles up to %d%n", rules, pileCount, bound);
+            for (int threads = 1; ; threads = Math.min(cores, threads * 2)) {
+                QLearningTrainer trainer = new QLearningTrainer(rules, pileCount, bound);
+                trainer.start(threads, 42);
+                Thread.sleep(1000); // warm-up
+                long before = trainer.episodes();
+                long start = System.nanoTime();
+                Thread.sleep(3000);
+                double rate = (trainer.episodes() - before) * 1e9 / (System.nanoTime() - start);
+                trainer.stop();
+                System.out.printf("%3d threads: %,12.0f episodes/sec%n", threads, rate);
+                if (threads == cores) {
+                    break;
+                }
+            }
+            return;
+        }
+
+        long seconds = args.length > 4 ? Long.parseLong(args[4]) : 30;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : cores;
+        QLearningTrainer trainer = new QLearningTrainer(rules, pileCount, bound);
+        System.out.printf("Training %s on %d piles up to %d (%,d positions x %d actions) on %d threads for %d s%n",
+                rules, pileCount, bound, trainer.positions, trainer.actions, threads, seconds);
+        long start = System.nanoTime();
+        trainer.start(threads, System.nanoTime());
+        long last = 0;
+        for (long second = 1; second <= seconds; second++) {
+            Thread.sleep(Math.max(0, start + second * 1_000_000_000L - System.nanoTime()) / 1_000_000);
+            long episodes = trainer.episodes();
+            if (second % 5 == 0 || second == seconds) {
+                System.out.printf("%4d s  %,14d episodes  %,12d episodes/sec  winning positions solved %6.2f%%%n",
+                        second, episodes, episodes - last, 100 * trainer.accuracy());
+            }
+            last = episodes;
+        }
+        trainer.stop();
+        long episodes = trainer.episodes();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        trainer.export(Path.of(args[0]));
+        System.out.printf("%,d episodes in %.1f s (%,.0f episodes/sec); winning positions solved %.2f%%; policy written to %s%n",
+                episodes, elapsed, episodes / elapsed, 100 * trainer.accuracy(), args[0]);
+    }
+}
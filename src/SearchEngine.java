@@ -0,0 +1,574 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Game-tree search for the computer player, for rules where the nim-sum shortcut is not available or not trusted.
+// It only uses the rules (which moves are legal, and that whoever cannot move loses), never the Grundy values.
+//
+// Two algorithms share one per-move time budget and use every core:
+// - Iterative-deepening alpha-beta. Each thread searches its own copy of the position and all of them share one
+//   TranspositionTable, so the helpers fill in results the main thread then finds with a single probe ("lazy SMP").
+//   Wins and losses are scored by distance, so a proven result is the quickest win or the slowest loss.
+// - Root-parallel Monte Carlo tree search. Each thread grows its own UCT tree from random playouts, and the visit
+//   counts of the root moves are added up at the end.
+// When the deadline passes, or the calling thread is interrupted, the search stops within a few microseconds and
+// returns the best move found so far, so the time a front-end waits is bounded by the budget whatever the position.
+//
+// Moves are generated one at a time, so a search never holds a position's whole move list: in plain Nim a pile of a
+// billion markers has a billion moves. A search on one thread runs on the caller's; the worker threads are only started
+// by the first search that asks for more, and the transposition table is allocated by the first search.
+//
+// Usage: java SearchEngine [variant] [piles, e.g. 3,7,5] [difficulty]
+public final class SearchEngine implements AutoCloseable {
+
+    public enum Algorithm {
+        ALPHA_BETA,
+        MCTS
+    }
+
+    // Compute budgets the front-ends offer as difficulty levels.
+    public enum Difficulty {
+        EASY(20, 2, 1),
+        MEDIUM(100, 8, 1),
+        HARD(500, TranspositionTable.MAX_DEPTH, 0),
+        EXPERT(2000, TranspositionTable.MAX_DEPTH, 0);
+
+        private final long budgetMillis;
+        private final int maxDepth;
+        private final int threads; // 0 means every core
+
+        Difficulty(long budgetMillis, int maxDepth, int threads) {
+            this.budgetMillis = budgetMillis;
+            this.maxDepth = maxDepth;
+            this.threads = threads;
+        }
+
+        public long budgetMillis() {
+            return budgetMillis;
+        }
+
+        public int maxDepth() {
+            return maxDepth;
+        }
+
+        public int threads() {
+            return threads;
+        }
+
+        public static Difficulty parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    // Outcome of one search. For alpha-beta the score is WIN minus the distance for a proven win, its negation for a
+    // proven loss and 0 otherwise; for MCTS it is the expected result of the move in thousandths, from -1000 to 1000.
+    public record Result(long move, int score, int depth, long nodes, long elapsedNanos, boolean proven) {
+
+        public double nodesPerSecond() {
+            return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+        }
+    }
+
+    public static final int WIN = 32_000;
+    private static final int PROVEN = WIN - 1_000;  // scores beyond this are wins or losses at a known distance
+    private static final int INFINITY = WIN + 1;
+    private static final int CLOCK_MASK = 1023;     // nodes between deadline checks
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private final int tableMegabytes;
+    private final int parallelism;
+    private final SplittableRandom random;
+    private TranspositionTable table;       // allocated by the first search
+    private volatile ExecutorService workers; // started by the first search on more than one thread
+    private volatile boolean closed;
+    private OctalGame tableRules;
+
+    public SearchEngine(int tableMegabytes, long seed) {
+        if (tableMegabytes < 1 || tableMegabytes > 16384) {
+            throw new IllegalArgumentException("Table size must be between 1 and 16384 MB: " + tableMegabytes);
+        }
+        this.tableMegabytes = tableMegabytes;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.random = new SplittableRandom(seed);
+    }
+
+    public SearchEngine() {
+        this(64, System.nanoTime());
+    }
+
+    public Result search(NimEngine position, Algorithm algorithm, Difficulty difficulty) {
+        return search(position, algorithm, difficulty.budgetMillis, difficulty.maxDepth, difficulty.threads);
+    }
+
+    // Searches the position for at most budgetMillis and returns the best move found. The position is not changed.
+    public synchronized Result search(NimEngine position, Algorithm algorithm, long budgetMillis, int maxDepth,
+                                      int threads) {
+        long start = System.nanoTime();
+        if (position.isGameOver()) {
+            return new Result(NimEngine.NO_MOVE, -WIN, 0, 0, 0, true);
+        }
+        if (table == null) {
+            table = new TranspositionTable(tableMegabytes);
+        } else if (tableRules != position.rules()) {
+            table.clear(); // the hash does not include the rules
+        }
+        tableRules = position.rules();
+        table.newSearch();
+        Deadline deadline = new Deadline(start + budgetMillis * 1_000_000L);
+        int count = threads <= 0 ? parallelism : Math.min(threads, parallelism);
+        int depthLimit = Math.max(1, Math.min(maxDepth, TranspositionTable.MAX_DEPTH));
+
+        List<Callable<Object>> tasks = new ArrayList<>();
+        List<AlphaBetaWorker> alphaBeta = new ArrayList<>();
+        List<MctsWorker> mcts = new ArrayList<>();
+        for (int id = 0; id < count; id++) {
+            NimEngine copy = new NimEngine(position.rules(), position.piles());
+            if (algorithm == Algorithm.ALPHA_BETA) {
+                AlphaBetaWorker worker = new AlphaBetaWorker(copy, deadline, id, depthLimit);
+                alphaBeta.add(worker);
+                tasks.add(Executors.callable(worker));
+            } else {
+                MctsWorker worker = new MctsWorker(copy, deadline, random.split());
+                mcts.add(worker);
+                tasks.add(Executors.callable(worker));
+            }
+        }
+        if (count == 1) {
+            (algorithm == Algorithm.ALPHA_BETA ? alphaBeta.get(0) : mcts.get(0)).run();
+        } else {
+            try {
+                for (Future<Object> future : workers().invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deadline.stopped = true;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search failed", e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return algorithm == Algorithm.ALPHA_BETA ? combineAlphaBeta(alphaBeta, elapsed) : combineMcts(mcts, elapsed);
+    }
+
+    // The deepest completed iteration wins; the main thread (listed first) breaks ties.
+    private static Result combineAlphaBeta(List<AlphaBetaWorker> workers, long elapsed) {
+        AlphaBetaWorker best = workers.get(0);
+        long nodes = 0;
+        for (AlphaBetaWorker worker : workers) {
+            nodes += worker.nodes;
+            if (worker.completedDepth > best.completedDepth) {
+                best = worker;
+            }
+        }
+        return new Result(best.bestMove, best.bestScore, best.completedDepth, nodes, elapsed,
+                Math.abs(best.bestScore) > PROVEN);
+    }
+
+    // The root move visited most often across all trees.
+    private static Result combineMcts(List<MctsWorker> workers, long elapsed) {
+        Map<Long, double[]> totals = new HashMap<>(); // move -> {visits, wins}
+        long nodes = 0;
+        for (MctsWorker worker : workers) {
+            nodes += worker.nodes;
+            Node root = worker.root;
+            for (int i = 0; i < root.expanded; i++) {
+                Node child = root.children[i];
+                double[] total = totals.computeIfAbsent(child.move, m -> new double[2]);
+                total[0] += child.visits;
+                total[1] += child.wins;
+            }
+        }
+        MctsWorker first = workers.get(0);
+        long bestMove = first.root.expanded > 0 ? first.root.children[0].move : nthMove(first.engine, first.root.firstMove);
+        double[] best = {0, 0};
+        for (Map.Entry<Long, double[]> entry : totals.entrySet()) {
+            if (entry.getValue()[0] > best[0]) {
+                bestMove = entry.getKey();
+                best = entry.getValue();
+            }
+        }
+        int score = best[0] == 0 ? 0 : (int) Math.round(1000 * (2 * best[1] / best[0] - 1));
+        return new Result(bestMove, score, 0, nodes, elapsed, false);
+    }
+
+    // Only called from search, which holds the lock.
+    private ExecutorService workers() {
+        if (closed) {
+            throw new IllegalStateException("Search engine closed");
+        }
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(parallelism, task -> {
+                Thread thread = new Thread(task, "search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workers;
+    }
+
+    // Stops the worker threads, if any were started. Searches on one thread still work afterwards.
+    @Override
+    public void close() {
+        closed = true;
+        ExecutorService pool = workers;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    // Shared by the workers of one search: the time limit, and the flag that stops all of them.
+    private static final class Deadline {
+        final long nanos;
+        volatile boolean stopped;
+
+        Deadline(long nanos) {
+            this.nanos = nanos;
+        }
+
+        // Polled every few microseconds: the time is up or the searching thread has been interrupted.
+        boolean expired() {
+            return System.nanoTime() >= nanos || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    // Steps through a position's legal moves one at a time, pile by pile from a given pile, skipping one move (tried
+    // first by the caller). The position may change in between as long as it is back when next() is called.
+    private static final class Moves {
+        private NimEngine engine;
+        private int first;
+        private int step;
+        private int pile;
+        private long heap;
+        private long limit;
+        private long count;
+        private long skip;
+
+        Moves reset(NimEngine engine, int firstPile, long skip) {
+            this.engine = engine;
+            this.first = firstPile % engine.pileCount();
+            this.skip = skip;
+            step = -1;
+            limit = 0;
+            count = 0;
+            return this;
+        }
+
+        // The next move, or NO_MOVE when there are no more.
+        long next() {
+            OctalGame rules = engine.rules();
+            while (true) {
+                while (++count <= limit) {
+                    if (rules.allows(heap, count)) {
+                        long move = NimEngine.move(pile, count);
+                        if (move != skip) {
+                            return move;
+                        }
+                    }
+                }
+                if (++step == engine.pileCount()) {
+                    return NimEngine.NO_MOVE;
+                }
+                pile = (first + step) % engine.pileCount();
+                heap = engine.pile(pile);
+                limit = Math.min(heap, rules.maxTake());
+                count = 0;
+            }
+        }
+    }
+
+    // The index-th of the position's legal moves, counted pile by pile.
+    private static long nthMove(NimEngine engine, long index) {
+        OctalGame rules = engine.rules();
+        for (int i = 0; ; i++) {
+            long moves = rules.legalMoveCount(engine.pile(i));
+            if (index < moves) {
+                return NimEngine.move(i, rules.nthMove(engine.pile(i), index));
+            }
+            index -= moves;
+        }
+    }
+
+    private final class AlphaBetaWorker implements Runnable {
+        private final NimEngine engine;
+        private final Deadline deadline;
+        private final int id;
+        private final int maxDepth;
+        private final TranspositionTable.Hit hit = new TranspositionTable.Hit();
+        private final Moves[] moves = new Moves[TranspositionTable.MAX_DEPTH + 1]; // one generator per ply
+        long nodes;
+        long bestMove = NimEngine.NO_MOVE;
+        int bestScore;
+        int completedDepth;
+
+        AlphaBetaWorker(NimEngine engine, Deadline deadline, int id, int maxDepth) {
+            this.engine = engine;
+            this.deadline = deadline;
+            this.id = id;
+            this.maxDepth = maxDepth;
+        }
+
+        private Moves moves(int ply) {
+            if (moves[ply] == null) {
+                moves[ply] = new Moves();
+            }
+            return moves[ply];
+        }
+
+        @Override
+        public void run() {
+            // Helpers start the root moves from a different pile, so they reach different parts of the tree first.
+            bestMove = moves(0).reset(engine, id, NimEngine.NO_MOVE).next();
+            for (int depth = 1; depth <= maxDepth && !deadline.stopped; depth++) {
+                int alpha = -INFINITY;
+                long iterationMove = NimEngine.NO_MOVE;
+                int iterationScore = -INFINITY;
+                // The best move of the last iteration first, then the rest
+                Moves rootMoves = moves(0).reset(engine, id, bestMove);
+                for (long move = bestMove; move != NimEngine.NO_MOVE; move = rootMoves.next()) {
+                    engine.apply(move);
+                    int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+                    engine.undo(move);
+                    if (deadline.stopped) {
+                        break;
+                    }
+                    if (score > iterationScore) {
+                        iterationScore = score;
+                        iterationMove = move;
+                        alpha = Math.max(alpha, score);
+                    }
+                }
+                if (deadline.stopped) {
+                    // A partial iteration is only worth using if there is nothing better yet.
+                    if (completedDepth == 0 && iterationMove != NimEngine.NO_MOVE) {
+                        bestMove = iterationMove;
+                        bestScore = iterationScore;
+                    }
+                    break;
+                }
+                bestMove = iterationMove;
+                bestScore = iterationScore;
+                completedDepth = depth;
+                table.store(engine.hash(), bestScore, depth, TranspositionTable.EXACT, bestMove);
+                if (Math.abs(bestScore) > PROVEN) {
+                    break;
+                }
+            }
+            if (id == 0) {
+                deadline.stopped = true; // the main thread has its answer; stop the helpers
+            }
+        }
+
+        // Fail-soft negamax. A position without moves is lost; an unresolved one at the horizon scores 0.
+        private int negamax(int depth, int ply, int alpha, int beta) {
+            if ((++nodes & CLOCK_MASK) == 0 && deadline.expired()) {
+                deadline.stopped = true;
+            }
+            if (deadline.stopped) {
+                return 0;
+            }
+            if (engine.isGameOver()) {
+                return -(WIN - ply);
+            }
+            if (depth == 0) {
+                return 0;
+            }
+            long hash = engine.hash();
+            long hashMove = NimEngine.NO_MOVE;
+            if (table.probe(hash, hit)) {
+                hashMove = hit.move();
+                if (hit.depth() >= depth) {
+                    int score = fromTable(hit.score(), ply);
+                    int bound = hit.bound();
+                    if (bound == TranspositionTable.EXACT
+                            || bound == TranspositionTable.LOWER && score >= beta
+                            || bound == TranspositionTable.UPPER && score <= alpha) {
+                        return score;
+                    }
+                }
+            }
+
+            // The table's move first, unless a hash collision makes it illegal here, then the rest
+            if (hashMove != NimEngine.NO_MOVE
+                    && !engine.isLegal(NimEngine.movePile(hashMove), NimEngine.moveCount(hashMove))) {
+                hashMove = NimEngine.NO_MOVE;
+            }
+            Moves moves = moves(ply).reset(engine, 0, hashMove);
+            long first = hashMove != NimEngine.NO_MOVE ? hashMove : moves.next();
+
+            int originalAlpha = alpha;
+            int best = -INFINITY;
+            long bestMove = first;
+            for (long move = first; move != NimEngine.NO_MOVE; move = moves.next()) {
+                engine.apply(move);
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                engine.undo(move);
+                if (deadline.stopped) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            // A proven result holds at any depth, which keeps it useful in later moves and games.
+            int storedDepth = Math.abs(best) > PROVEN ? TranspositionTable.MAX_DEPTH : depth;
+            table.store(hash, toTable(best, ply), storedDepth, bound, bestMove);
+            return best;
+        }
+    }
+
+    // Proven scores count plies from the root; the table stores them counted from the position itself.
+    private static int toTable(int score, int ply) {
+        return score > PROVEN ? score + ply : score < -PROVEN ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > PROVEN ? score - ply : score < -PROVEN ? score + ply : score;
+    }
+
+    // A node of a UCT tree. Its children are created one at a time, in the order of its moves from a random one on.
+    private static final class Node {
+        final long move;     // the move that led here
+        final Node parent;
+        long moveCount = -1; // legal moves in the position, or -1 until the node is first expanded
+        long firstMove;      // number of the move the first child plays
+        Node[] children;
+        int expanded;        // children[0..expanded) exist
+        int visits;
+        double wins;         // playouts won by the player who made move
+
+        Node(long move, Node parent) {
+            this.move = move;
+            this.parent = parent;
+        }
+    }
+
+    private static final class MctsWorker implements Runnable {
+        private final NimEngine engine;
+        private final Deadline deadline;
+        private final SplittableRandom random;
+        private final Node root = new Node(NimEngine.NO_MOVE, null);
+        private long[] playout = new long[64];
+        long nodes;
+
+        MctsWorker(NimEngine engine, Deadline deadline, SplittableRandom random) {
+            this.engine = engine;
+            this.deadline = deadline;
+            this.random = random;
+            expand(root);
+        }
+
+        @Override
+        public void run() {
+            do {
+                iterate();
+            } while (!deadline.stopped && !deadline.expired());
+        }
+
+        private void iterate() {
+            // Selection: descend through fully expanded nodes by UCT.
+            Node node = root;
+            while (node.moveCount > 0 && node.expanded == node.moveCount) {
+                node = select(node);
+                engine.apply(node.move);
+                nodes++;
+            }
+            // Expansion: add one child.
+            if (node.moveCount < 0) {
+                expand(node);
+            }
+            if (node.expanded < node.moveCount) {
+                if (node.expanded == node.children.length) {
+                    node.children = Arrays.copyOf(node.children, (int) Math.min(node.moveCount, 2L * node.expanded));
+                }
+                Node child = new Node(nthMove(engine, (node.firstMove + node.expanded) % node.moveCount), node);
+                node.children[node.expanded++] = child;
+                node = child;
+                engine.apply(node.move);
+                nodes++;
+            }
+            // Playout: random moves to the end. The player who made node.move wins if an even number follow.
+            int length = 0;
+            while (!engine.isGameOver()) {
+                long move = engine.randomMove(random);
+                engine.apply(move);
+                if (length == playout.length) {
+                    playout = Arrays.copyOf(playout, 2 * length);
+                }
+                playout[length++] = move;
+            }
+            nodes += length;
+            for (int i = length - 1; i >= 0; i--) {
+                engine.undo(playout[i]);
+            }
+            // Backpropagation, undoing the tree moves on the way up.
+            double reward = (length & 1) == 0 ? 1 : 0;
+            for (Node n = node; n != null; n = n.parent) {
+                n.visits++;
+                n.wins += reward;
+                reward = 1 - reward;
+                if (n.parent != null) {
+                    engine.undo(n.move);
+                }
+            }
+        }
+
+        private Node select(Node node) {
+            double logVisits = Math.log(node.visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < node.expanded; i++) {
+                Node child = node.children[i];
+                double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private void expand(Node node) {
+            node.moveCount = engine.legalMoveCount();
+            node.firstMove = node.moveCount == 0 ? 0 : random.nextLong(node.moveCount);
+            node.children = new Node[(int) Math.min(node.moveCount, 16)];
+        }
+    }
+
+    public static void main(String[] args) {
+        OctalGame rules = args.length > 0 ? OctalGame.parse(args[0]) : OctalGame.NIM;
+        long[] piles = args.length > 1 ? NimEngine.parsePiles(args[1]) : new long[]{3, 7, 5};
+        Difficulty difficulty = args.length > 2 ? Difficulty.parse(args[2]) : Difficulty.HARD;
+        NimEngine position = new NimEngine(rules, piles);
+        try (SearchEngine search = new SearchEngine()) {
+            System.out.printf("%s %s, %s: %d ms per move, %d threads%n", rules, position, difficulty,
+                    difficulty.budgetMillis(), difficulty.threads() == 0 ? search.parallelism : difficulty.threads());
+            for (Algorithm algorithm : Algorithm.values()) {
+                Result result = search.search(position, algorithm, difficulty);
+                System.out.printf("%-10s take %d from pile %d  score %6d  depth %3d%s  %,d nodes in %.0f ms, "
+                                + "%,.0f nodes/sec%n",
+                        algorithm, NimEngine.moveCount(result.move()), NimEngine.movePile(result.move()) + 1,
+                        result.score(), result.depth(), result.proven() ? " (proven)" : "",
+                        result.nodes(), result.elapsedNanos() / 1e6, result.nodesPerSecond());
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless self-play mode for measuring the computer's strategy over very large numbers of games.
+// Games are spread over every core with fork/join. Each task splits its own SplittableRandom, so a run is
+// reproducible from its seed no matter how the work gets scheduled, and results go into striped LongAdder
+// counters instead of a shared lock.
+//
+// Usage: java SelfPlaySimulator [games] [seed] [piles, e.g. 3,7,5]
+public final class SelfPlaySimulator {
+
+    // How the random side picks its moves (and how the computer moves when it has no winning move).
+    public enum RandomPolicy {
+        RANDOM_COUNT, // random non-empty pile, random number of markers (Nim and DoubleTroubleGUI)
+        TAKE_ONE      // random non-empty pile, a single marker (DoubleTroubleGame)
+    }
+
+    // Aggregated counters for one simulation run.
+    public static final class Results {
+        private final LongAdder strategyWins = new LongAdder();
+        private final LongAdder randomWins = new LongAdder();
+        private final LongAdder moves = new LongAdder();
+        private long elapsedNanos;
+
+        public long games() {
+            return strategyWins.sum() + randomWins.sum();
+        }
+
+        public long strategyWins() {
+            return strategyWins.sum();
+        }
+
+        public long randomWins() {
+            return randomWins.sum();
+        }
+
+        public double strategyWinRate() {
+            long games = games();
+            return games == 0 ? 0 : (double) strategyWins() / games;
+        }
+
+        public double averageMoves() {
+            long games = games();
+            return games == 0 ? 0 : (double) moves.sum() / games;
+        }
+
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games() * 1e9 / elapsedNanos;
+        }
+    }
+
+    // Games played sequentially by one leaf task before the counters are updated.
+    private static final long LEAF_GAMES = 16_384;
+
+    private final ForkJoinPool pool;
+
+    public SelfPlaySimulator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public SelfPlaySimulator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // Plays the given number of games of the XOR strategy against a random player and returns the tallies.
+    public Results run(long[] startingPiles, boolean strategyMovesFirst, RandomPolicy policy, long games, long seed) {
+        Results results = new Results();
+        long start = System.nanoTime();
+        pool.invoke(new SimulationTask(startingPiles, strategyMovesFirst, policy, games, new SplittableRandom(seed), results));
+        results.elapsedNanos = System.nanoTime() - start;
+        return results;
+    }
+
+    private static final class SimulationTask extends RecursiveAction {
+        private final long[] startingPiles;
+        private final boolean strategyMovesFirst;
+        private final RandomPolicy policy;
+        private final long games;
+        private final SplittableRandom random;
+        private final Results results;
+
+        SimulationTask(long[] startingPiles, boolean strategyMovesFirst, RandomPolicy policy, long games,
+                       SplittableRandom random, Results results) {
+            this.startingPiles = startingPiles;
+            this.strategyMovesFirst = strategyMovesFirst;
+            this.policy = policy;
+            this.games = games;
+            this.random = random;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (games <= LEAF_GAMES) {
+                playGames();
+                return;
+            }
+            long half = games / 2;
+            // Split the generator before forking so that every subtree gets the same stream on every run.
+            SimulationTask left = new SimulationTask(startingPiles, strategyMovesFirst, policy, half, random.split(), results);
+            SimulationTask right = new SimulationTask(startingPiles, strategyMovesFirst, policy, games - half, random.split(), results);
+            invokeAll(left, right);
+        }
+
+        private void playGames() {
+            NimEngine engine = new NimEngine(startingPiles);
+            long strategyWins = 0;
+            long moves = 0;
+            for (long game = 0; game < games; game++) {
+                engine.reset();
+                boolean strategyTurn = strategyMovesFirst;
+                boolean strategyMovedLast = false;
+                while (!engine.isGameOver()) {
+                    long move = strategyTurn ? engine.winningMove() : NimEngine.NO_MOVE;
+                    if (move == NimEngine.NO_MOVE) {
+                        move = randomMove(engine);
+                    }
+                    engine.apply(move);
+                    moves++;
+                    strategyMovedLast = strategyTurn;
+                    strategyTurn = !strategyTurn;
+                }
+                // Whoever takes the last marker wins, as in all three front-ends.
+                if (strategyMovedLast) {
+                    strategyWins++;
+                }
+            }
+            results.strategyWins.add(strategyWins);
+            results.randomWins.add(games - strategyWins);
+            results.moves.add(moves);
+        }
+
+        private long randomMove(NimEngine engine) {
+            return policy == RandomPolicy.TAKE_ONE ? engine.takeOneMove(random) : engine.randomMove(random);
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        long[] piles = args.length > 2 ? NimEngine.parsePiles(args[2]) : new long[]{3, 7, 5};
+
+        SelfPlaySimulator simulator = new SelfPlaySimulator();
+        System.out.printf("Self-play: %d games per configuration, seed %d, piles %s, %d worker threads%n",
+                games, seed, Arrays.toString(piles), ForkJoinPool.commonPool().getParallelism());
+        for (RandomPolicy policy : RandomPolicy.values()) {
+            for (boolean strategyFirst : new boolean[]{true, false}) {
+                Results results = simulator.run(piles, strategyFirst, policy, games, seed);
+                System.out.printf("%-12s computer %-6s win rate %6.2f%%  avg moves %5.2f  %,.0f games/sec%n",
+                        policy, strategyFirst ? "first" : "second", 100 * results.strategyWinRate(),
+                        results.averageMoves(), results.gamesPerSecond());
+            }
+        }
+    }
+}
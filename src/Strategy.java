@@ -0,0 +1,151 @@
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToLongBiFunction;
+import java.util.random.RandomGenerator;
+
+// A way of choosing moves, so that players can be swapped and compared in a BotArena: the computer's XOR strategy with
+// each front-end's fallback, plain random players, and search bots.
+//
+// A strategy is called from many threads at once, each with its own engine and generator, so one that keeps state
+// (such as a search bot's transposition table) keeps it per caller. Closing a strategy releases that state, and the
+// state of the strategies it falls back on.
+public interface Strategy extends AutoCloseable {
+
+    String name();
+
+    // The move to play in the position, which is not over. The engine may be searched with apply and undo, but must
+    // be left as it was.
+    long move(NimEngine position, RandomGenerator random);
+
+    @Override
+    default void close() {
+    }
+
+    static Strategy of(String name, ToLongBiFunction<NimEngine, RandomGenerator> chooser) {
+        return of(name, chooser, () -> {
+        });
+    }
+
+    // A strategy that runs onClose when it is closed.
+    static Strategy of(String name, ToLongBiFunction<NimEngine, RandomGenerator> chooser, Runnable onClose) {
+        return new Strategy() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public long move(NimEngine position, RandomGenerator random) {
+                return chooser.applyAsLong(position, random);
+            }
+
+            @Override
+            public void close() {
+                onClose.run();
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    // Any legal move, uniformly: Nim's fallback.
+    static Strategy random() {
+        return of("random", NimEngine::randomMove);
+    }
+
+    // As few markers as possible from a random pile: DoubleTroubleGame's fallback.
+    static Strategy takeOne() {
+        return of("take-one", NimEngine::takeOneMove);
+    }
+
+    // As many markers as the rules allow from the largest pile.
+    static Strategy greedy() {
+        return of("greedy", (position, random) -> {
+            int largest = 0;
+            long most = -1;
+            for (int i = 0; i < position.pileCount(); i++) {
+                long moves = position.rules().legalMoveCount(position.pile(i));
+                if (moves > 0 && position.pile(i) > most) {
+                    largest = i;
+                    most = position.pile(i);
+                }
+            }
+            long moves = position.rules().legalMoveCount(most);
+            return NimEngine.move(largest, position.rules().nthMove(most, moves - 1));
+        });
+    }
+
+    // The computer's strategy: the move to a zero nim-sum of Grundy values when there is one, otherwise the
+    // fallback's move.
+    static Strategy xor(Strategy fallback) {
+        return of("xor/" + fallback.name(), (position, random) -> {
+            long move = position.winningMove();
+            return move != NimEngine.NO_MOVE ? move : fallback.move(position, random);
+        }, fallback::close);
+    }
+
+    // The tablebase's quickest win or longest-resisting loss where it covers the position, otherwise the fallback's
+    // move. Nim and DoubleTroubleGUI play tablebase(xor(random())).
+    static Strategy tablebase(Tablebase tablebase, Strategy fallback) {
+        if (tablebase == null) {
+            return fallback;
+        }
+        return of("tablebase/" + fallback.name(), (position, random) -> {
+            long move = tablebase.bestMove(position);
+            return move != NimEngine.NO_MOVE ? move : fallback.move(position, random);
+        }, fallback::close);
+    }
+
+    // The learned policy's move where it covers the position (never one that gives up a win), otherwise the
+    // fallback's move.
+    static Strategy learned(LearnedPolicy policy, Strategy fallback) {
+        if (policy == null) {
+            return fallback;
+        }
+        return of("learned/" + fallback.name(), (position, random) -> {
+            long move = policy.bestMove(position);
+            return move != NimEngine.NO_MOVE ? move : fallback.move(position, random);
+        }, fallback::close);
+    }
+
+    // Plays like the strategy, except that with the given probability it plays a random move instead.
+    static Strategy erring(Strategy strategy, double mistakeRate) {
+        if (mistakeRate < 0 || mistakeRate > 1) {
+            throw new IllegalArgumentException("Mistake rate must be between 0 and 1: " + mistakeRate);
+        }
+        return of(strategy.name() + String.format(Locale.ROOT, "~%.0f%%", 100 * mistakeRate), (position, random) ->
+                random.nextDouble() < mistakeRate ? position.randomMove(random) : strategy.move(position, random),
+                strategy::close);
+    }
+
+    // Search on the calling thread with the given budget per move. A game takes an idle SearchEngine with a small
+    // transposition table, or makes one, and gives it back after the move, so concurrent games do not queue for one
+    // engine and there are never more engines than games in progress at once. Closing drops them.
+    static Strategy search(SearchEngine.Algorithm algorithm, long budgetMillis, int maxDepth) {
+        Queue<SearchEngine> idle = new ConcurrentLinkedQueue<>();
+        String name = algorithm.name().toLowerCase(Locale.ROOT).replace('_', '-') + "/" + budgetMillis + "ms"
+                + (maxDepth < TranspositionTable.MAX_DEPTH ? "/d" + maxDepth : "");
+        return of(name, (position, random) -> {
+            SearchEngine engine = idle.poll();
+            if (engine == null) {
+                engine = new SearchEngine(4, Thread.currentThread().threadId());
+            }
+            try {
+                return engine.search(position, algorithm, budgetMillis, maxDepth, 1).move();
+            } finally {
+                idle.offer(engine);
+            }
+        }, idle::clear);
+    }
+
+    // Alpha-beta search with the engine's own budget, on the engine the caller owns and closes: how DoubleTroubleGame
+    // and DoubleTroubleGUI play variants at a difficulty.
+    static Strategy search(SearchEngine engine, SearchEngine.Difficulty difficulty) {
+        return of("alpha-beta/" + difficulty.name().toLowerCase(Locale.ROOT), (position, random) ->
+                engine.search(position, SearchEngine.Algorithm.ALPHA_BETA, difficulty).move());
+    }
+}
@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Endgame tablebase: the distance to the end of the game, with best play, for every position whose piles are all at
+// most a configured bound. The winner plays to finish as fast as possible and the loser to hold out as long as
+// possible, so the computer can pick the quickest win and the longest-resisting loss instead of the first winning pile
+// or a random move.
+//
+// Distances are counted in moves and packed two per byte (one nibble each, 15 meaning "15 or more") in a file that is
+// memory-mapped, so opening a tablebase costs nothing on the heap however large it is. Whether a position is won is
+// not stored: it follows from the nim-sum of the Grundy values, which the engine already tracks.
+//
+// The table is built by retrograde analysis. Every move lowers exactly one pile, and positions are numbered in mixed
+// radix with one digit per pile, so every successor of a position has a smaller number. Walking the numbers upwards
+// from the terminal position therefore visits each position after all of its successors have been solved.
+//
+// Usage: java Tablebase build <file> <variant> <piles> <bound>
+//        java Tablebase info <file>
+public final class Tablebase {
+
+    public static final int MAX_DISTANCE = 15;
+
+    private static final int MAGIC = 0x4E4D5442; // "NMTB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int MAX_CODE_BYTES = HEADER_BYTES - 5 * Integer.BYTES;
+
+    // Bound and pile count used for the tablebase the front-ends open at startup.
+    private static final int STANDARD_PILES = 3;
+    private static final int STANDARD_BOUND = 31;
+
+    private final OctalGame rules;
+    private final int pileCount;
+    private final int bound;
+    private final long[] strides;  // strides[i] = (bound + 1)^i
+    private final long positions;
+    private final ByteBuffer data; // nibbles, starting right after the header
+
+    private Tablebase(OctalGame rules, int pileCount, int bound, ByteBuffer data) {
+        this.rules = rules;
+        this.pileCount = pileCount;
+        this.bound = bound;
+        this.strides = new long[pileCount];
+        long stride = 1;
+        for (int i = 0; i < pileCount; i++) {
+            strides[i] = stride;
+            stride *= bound + 1;
+        }
+        this.positions = stride;
+        this.data = data;
+    }
+
+    public OctalGame rules() {
+        return rules;
+    }
+
+    public int pileCount() {
+        return pileCount;
+    }
+
+    public int bound() {
+        return bound;
+    }
+
+    // Builds a tablebase into the given file and opens it. The table is written to a temporary file first and moved
+    // into place afterwards, so another process never sees a half-built table.
+    public static Tablebase build(Path file, OctalGame rules, int pileCount, int bound) throws IOException {
+        if (rules.splits()) {
+            throw new IllegalArgumentException("Variants that split heaps are not supported: " + rules);
+        }
+        byte[] code = rules.code().getBytes(StandardCharsets.US_ASCII);
+        if (code.length > MAX_CODE_BYTES) {
+            throw new IllegalArgumentException("Variant code too long for the tablebase header: " + rules);
+        }
+        double positions = Math.pow(bound + 1, pileCount);
+        if (pileCount < 1 || bound < 1 || positions > 2.0 * (Integer.MAX_VALUE - HEADER_BYTES)) {
+            throw new IllegalArgumentException("A tablebase of " + pileCount + " piles up to " + bound + " does not fit in one file mapping");
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = HEADER_BYTES + ((long) positions + 1) / 2;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(pileCount).putInt(bound).putInt(code.length).put(code);
+                Tablebase table = new Tablebase(rules, pileCount, bound, buffer.position(HEADER_BYTES).slice());
+                table.solve();
+                buffer.force();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return open(file);
+    }
+
+    // Maps an existing tablebase read-only. Throws an IOException if the file is not a tablebase, its header is
+    // damaged, or it is shorter than its header says.
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Truncated tablebase file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+            int pileCount = buffer.getInt();
+            int bound = buffer.getInt();
+            int codeLength = buffer.getInt();
+            if (pileCount < 1 || bound < 1 || Math.pow(bound + 1, pileCount) > 2.0 * (Integer.MAX_VALUE - HEADER_BYTES)
+                    || codeLength < 0 || codeLength > MAX_CODE_BYTES) {
+                throw new IOException("Corrupt tablebase header: " + file);
+            }
+            byte[] code = new byte[codeLength];
+            buffer.get(code);
+            String name = new String(code, StandardCharsets.US_ASCII);
+            OctalGame rules;
+            try {
+                rules = name.equals(OctalGame.NIM.code()) ? OctalGame.NIM : OctalGame.of(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt tablebase header: " + file + ": " + e.getMessage(), e);
+            }
+            Tablebase table = new Tablebase(rules, pileCount, bound, buffer.position(HEADER_BYTES).slice());
+            if (channel.size() < HEADER_BYTES + (table.positions + 1) / 2) {
+                throw new IOException("Truncated tablebase file: " + file);
+            }
+            return table;
+        }
+    }
+
+    // Opens the tablebase in the given file, building it first if the file does not exist yet. A file that is
+    // corrupt or truncated, for instance by a crash of another program while it was being copied, is deleted and
+    // built again, as is one built for other rules or bounds.
+    public static Tablebase openOrBuild(Path file, OctalGame rules, int pileCount, int bound) throws IOException {
+        if (Files.exists(file)) {
+            try {
+                Tablebase table = open(file);
+                if (table.rules == rules && table.pileCount == pileCount && table.bound == bound) {
+                    return table;
+                }
+            } catch (IOException e) {
+                System.err.println("Rebuilding the endgame tablebase: " + e.getMessage());
+                Files.deleteIfExists(file);
+            }
+        }
+        return build(file, rules, pileCount, bound);
+    }
+
+    // The tablebase the three-pile front-ends use, kept in the temporary directory and built on first use.
+    // Returns null (and the computer plays without it) if the variant is unsupported or the file cannot be written.
+    public static Tablebase forStandardGame(OctalGame rules) {
+        if (rules.splits()) {
+            return null;
+        }
+        String name = "doubletrouble-" + rules.code() + "-" + STANDARD_PILES + "x" + STANDARD_BOUND + ".tb";
+        try {
+            return openOrBuild(Path.of(System.getProperty("java.io.tmpdir"), name), rules, STANDARD_PILES, STANDARD_BOUND);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Playing without an endgame tablebase: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // True if the engine plays these rules on this many piles and every pile is within the bound.
+    public boolean covers(NimEngine engine) {
+        if (engine.rules() != rules || engine.pileCount() != pileCount) {
+            return false;
+        }
+        for (int i = 0; i < pileCount; i++) {
+            if (engine.pile(i) > bound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Moves until the end of the game with best play from the engine's position (MAX_DISTANCE meaning at least that).
+    // Returns -1 if the position is not covered.
+    public int distance(NimEngine engine) {
+        if (!covers(engine)) {
+            return -1;
+        }
+        return distance(indexOf(engine));
+    }
+
+    // The quickest winning move if the player to move is winning, otherwise the move that delays the loss the longest.
+    // Returns NimEngine.NO_MOVE if the position is not covered or the game is over.
+    public long bestMove(NimEngine engine) {
+        if (!covers(engine) || engine.isGameOver()) {
+            return NimEngine.NO_MOVE;
+        }
+        long index = indexOf(engine);
+        long nimSum = engine.nimSum();
+        boolean winning = nimSum != 0;
+        long best = NimEngine.NO_MOVE;
+        int bestDistance = winning ? Integer.MAX_VALUE : -1;
+        for (int i = 0; i < pileCount; i++) {
+            long pile = engine.pile(i);
+            long pileGrundy = rules.grundy(pile);
+            for (long k = 1; k <= pile; k++) {
+                if (!rules.allows(pile, k)) {
+                    continue;
+                }
+                int childDistance = distance(index - k * strides[i]);
+                if (winning) {
+                    boolean childLost = (nimSum ^ pileGrundy ^ rules.grundy(pile - k)) == 0;
+                    if (childLost && childDistance < bestDistance) {
+                        best = NimEngine.move(i, k);
+                        bestDistance = childDistance;
+                    }
+                } else if (childDistance > bestDistance) {
+                    best = NimEngine.move(i, k);
+                    bestDistance = childDistance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private long indexOf(NimEngine engine) {
+        long index = 0;
+        for (int i = 0; i < pileCount; i++) {
+            index += engine.pile(i) * strides[i];
+        }
+        return index;
+    }
+
+    private int distance(long index) {
+        int b = data.get((int) (index >>> 1));
+        return (index & 1) == 0 ? b & 0x0F : (b >>> 4) & 0x0F;
+    }
+
+    private void setDistance(long index, int distance) {
+        int offset = (int) (index >>> 1);
+        int b = data.get(offset);
+        b = (index & 1) == 0 ? (b & 0xF0) | distance : (b & 0x0F) | (distance << 4);
+        data.put(offset, (byte) b);
+    }
+
+    // Retrograde pass over every position in increasing index order. A won position is one move more than its
+    // quickest lost successor; a lost position is one move more than its slowest successor; a position with no moves is 0.
+    // Saturating at MAX_DISTANCE commutes with min and max, so saturated values are exactly the saturated true ones.
+    private void solve() {
+        long[] piles = new long[pileCount];
+        for (long index = 0; index < positions; index++) {
+            long nimSum = 0;
+            for (long pile : piles) {
+                nimSum ^= rules.grundy(pile);
+            }
+            boolean winning = nimSum != 0;
+            int best = winning ? Integer.MAX_VALUE : -1;
+            for (int i = 0; i < pileCount; i++) {
+                long pile = piles[i];
+                long pileGrundy = rules.grundy(pile);
+                for (long k = 1; k <= pile; k++) {
+                    if (!rules.allows(pile, k)) {
+                        continue;
+                    }
+                    int child = distance(index - k * strides[i]);
+                    if (winning) {
+                        if ((nimSum ^ pileGrundy ^ rules.grundy(pile - k)) == 0) {
+                            best = Math.min(best, child);
+                        }
+                    } else {
+                        best = Math.max(best, child);
+                    }
+                }
+            }
+            setDistance(index, best < 0 ? 0 : Math.min(MAX_DISTANCE, best + 1));
+            // Advance the mixed-radix digits to the next position.
+            for (int i = 0; i < pileCount && ++piles[i] > bound; i++) {
+                piles[i] = 0;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 5 && args[0].equals("build")) {
+            long start = System.nanoTime();
+            Tablebase table = build(Path.of(args[1]), OctalGame.parse(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            System.out.printf("Built %,d positions in %.1f s%n", table.positions, (System.nanoTime() - start) / 1e9);
+        } else if (args.length == 2 && args[0].equals("info")) {
+            Tablebase table = open(Path.of(args[1]));
+            System.out.printf("Variant %s, %d piles up to %d, %,d positions%n", table.rules, table.pileCount, table.bound, table.positions);
+        } else {
+            System.err.println("Usage: java Tablebase build <file> <variant> <piles> <bound> | info <file>");
+        }
+    }
+}
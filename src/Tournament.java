@@ -0,0 +1,206 @@
+import java.util.SplittableRandom;
+import java.util.function.ToLongFunction;
+
+// Turn-by-turn state machine for a best-of-N Double Trouble tournament, shared by the Swing front-end and headless
+// runs. Each call makes one transition and returns, so whatever drives it (the EDT one event at a time, or a plain
+// loop) does so at constant stack depth however many rounds are played, and nothing is allocated after construction.
+//
+//   ROUND_START --startRound(first)--> TURN --play(move)--> TURN ... --> ROUND_OVER --nextRound()--> ROUND_START
+//                                                                                                \-> TOURNAMENT_OVER
+//
+// Whoever makes the last move wins the round, as in all three front-ends. Every transition is also reported to the
+// event sink, if one is set, from the thread driving the tournament.
+//
+// Usage: java Tournament [bestOfRounds] [tournaments] [variant] [piles, e.g. 3,7,5]
+public final class Tournament {
+
+    // The two seats. Headless runs put a bot in each.
+    public static final int PLAYER = 0;
+    public static final int COMPUTER = 1;
+
+    public enum Phase {
+        ROUND_START,     // waiting for startRound() with the side that moves first
+        TURN,            // waiting for play() by toMove()
+        ROUND_OVER,      // roundWinner() took the last marker; waiting for nextRound()
+        TOURNAMENT_OVER  // tournamentWinner() has won enough rounds; waiting for restart()
+    }
+
+    private final NimEngine engine;
+    private final long roundsNeededToWin;
+    private final long[] wins = new long[2];
+    private Phase phase = Phase.ROUND_START;
+    private int toMove;
+    private int roundWinner = -1;
+    private long roundsPlayed;
+    private long movesPlayed;
+    private GameEventSink events = GameEventSink.NONE;
+
+    // A tournament played on the engine's starting position; the engine is reset at the start of every round.
+    public Tournament(NimEngine engine, long bestOfRounds) {
+        if (bestOfRounds < 1) {
+            throw new IllegalArgumentException("A tournament needs at least one round: " + bestOfRounds);
+        }
+        this.engine = engine;
+        this.roundsNeededToWin = bestOfRounds / 2 + 1;
+    }
+
+    // Reports the tournament's transitions to the sink from now on, e.g. a GameEventRing that spectators read.
+    public void setEventSink(GameEventSink events) {
+        this.events = events == null ? GameEventSink.NONE : events;
+    }
+
+    public NimEngine engine() {
+        return engine;
+    }
+
+    public Phase phase() {
+        return phase;
+    }
+
+    public int toMove() {
+        return toMove;
+    }
+
+    public long wins(int side) {
+        return wins[side];
+    }
+
+    public long roundsNeededToWin() {
+        return roundsNeededToWin;
+    }
+
+    public long roundsPlayed() {
+        return roundsPlayed;
+    }
+
+    public long movesPlayed() {
+        return movesPlayed;
+    }
+
+    // The side that won the round just finished, or -1 while a round is in progress.
+    public int roundWinner() {
+        return phase == Phase.ROUND_OVER || phase == Phase.TOURNAMENT_OVER ? roundWinner : -1;
+    }
+
+    public int tournamentWinner() {
+        return phase == Phase.TOURNAMENT_OVER ? roundWinner : -1;
+    }
+
+    // Clears the score for a new tournament.
+    public void restart() {
+        wins[PLAYER] = 0;
+        wins[COMPUTER] = 0;
+        roundsPlayed = 0;
+        movesPlayed = 0;
+        roundWinner = -1;
+        engine.reset();
+        phase = Phase.ROUND_START;
+        events.tournamentStarted(roundsNeededToWin);
+    }
+
+    // Sets up the starting position with the given side to move. A starting position without moves is lost at once.
+    public void startRound(int firstToMove) {
+        expect(Phase.ROUND_START);
+        engine.reset();
+        toMove = firstToMove;
+        phase = Phase.TURN;
+        events.roundStarted(firstToMove);
+        if (engine.isGameOver()) {
+            endRound(1 - firstToMove);
+        }
+    }
+
+    // Gives up the round in progress without a result, as Nim's Replay button does, so that another can start.
+    public void abandonRound() {
+        expect(Phase.TURN);
+        phase = Phase.ROUND_START;
+    }
+
+    // Plays a move for the side to move. Returns false, changing nothing, if the move is illegal.
+    public boolean play(long move) {
+        expect(Phase.TURN);
+        if (!engine.apply(move)) {
+            return false;
+        }
+        movesPlayed++;
+        events.moved(toMove, move);
+        if (engine.isGameOver()) {
+            endRound(toMove);
+        } else {
+            toMove = 1 - toMove;
+        }
+        return true;
+    }
+
+    // Moves on from a finished round, to the next one or to the end of the tournament.
+    public void nextRound() {
+        expect(Phase.ROUND_OVER);
+        phase = wins[roundWinner] >= roundsNeededToWin ? Phase.TOURNAMENT_OVER : Phase.ROUND_START;
+        if (phase == Phase.TOURNAMENT_OVER) {
+            events.tournamentWon(roundWinner);
+        }
+    }
+
+    private void endRound(int winner) {
+        roundWinner = winner;
+        wins[winner]++;
+        roundsPlayed++;
+        phase = Phase.ROUND_OVER;
+        events.roundWon(winner, wins[winner]);
+    }
+
+    private void expect(Phase expected) {
+        if (phase != expected) {
+            throw new IllegalStateException("Expected " + expected + " but the tournament is in " + phase);
+        }
+    }
+
+    // Plays the whole tournament with a move generator in each seat, alternating who moves first from round to round
+    // (PLAYER first in round one). Returns the winning side.
+    public int playOut(ToLongFunction<NimEngine> player, ToLongFunction<NimEngine> computer) {
+        while (phase != Phase.TOURNAMENT_OVER) {
+            switch (phase) {
+                case ROUND_START -> startRound((int) (roundsPlayed & 1));
+                case TURN -> {
+                    long move = (toMove == PLAYER ? player : computer).applyAsLong(engine);
+                    if (!play(move)) {
+                        throw new IllegalStateException("Illegal move " + NimEngine.moveCount(move) + " from pile "
+                                + NimEngine.movePile(move) + " in " + engine);
+                    }
+                }
+                case ROUND_OVER -> nextRound();
+                default -> throw new AssertionError(phase);
+            }
+        }
+        return roundWinner;
+    }
+
+    public static void main(String[] args) {
+        long bestOf = args.length > 0 ? Long.parseLong(args[0]) : 1_000_001L;
+        int tournaments = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        OctalGame rules = args.length > 2 ? OctalGame.parse(args[2]) : OctalGame.NIM;
+        long[] piles = args.length > 3 ? NimEngine.parsePiles(args[3]) : new long[]{3, 7, 5};
+
+        // The computer's seat plays DoubleTroubleGame's strategy; the player's seat removes one marker at random.
+        SplittableRandom random = new SplittableRandom(42);
+        ToLongFunction<NimEngine> randomPlayer = engine -> engine.takeOneMove(random);
+        ToLongFunction<NimEngine> strategy = engine -> {
+            long move = engine.winningMove();
+            return move != NimEngine.NO_MOVE ? move : engine.takeOneMove(random);
+        };
+
+        Tournament tournament = new Tournament(new NimEngine(rules, piles), bestOf);
+        System.out.printf("Best of %,d rounds, %s %s%n", bestOf, rules, tournament.engine());
+        for (int t = 0; t < tournaments; t++) {
+            long start = System.nanoTime();
+            tournament.restart();
+            int winner = tournament.playOut(randomPlayer, strategy);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("%s wins %,d to %,d after %,d rounds (%,d moves): %,.0f rounds/sec, heap in use %,d KiB%n",
+                    winner == PLAYER ? "Player" : "Computer", tournament.wins(winner), tournament.wins(1 - winner),
+                    tournament.roundsPlayed(), tournament.movesPlayed(), tournament.roundsPlayed() / seconds,
+                    (runtime.totalMemory() - runtime.freeMemory()) >> 10);
+        }
+    }
+}
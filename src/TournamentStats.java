@@ -0,0 +1,373 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Lifetime round statistics shared by every Double Trouble and Nim process on the machine: wins, losses and moves per
+// player and starting position, plus a total per player and a total per starting position.
+//
+// The statistics live in one memory-mapped file, an open-addressing hash table of fixed 128-byte records, which all
+// processes map at once. A record is claimed by compare-and-swapping its key into an empty slot and its counters are
+// bumped with atomic adds on the shared mapping, so processes update it concurrently without a lock and a lookup is one
+// hash probe. Every update is a single aligned 8-byte write, so a process that dies mid-update leaves each counter
+// either before or after its add and the table intact; at worst one round's moves are counted without its result.
+// A process that dies between claiming a record and writing its label leaves the record nameless, and the next process
+// to count a round under that label writes the name in. When the table is full, rounds under new labels are dropped,
+// with one warning per process, and rounds under existing labels are still counted.
+//
+// The leaderboards are kept in the header instead of being found by scanning and sorting the whole table: a board of
+// the BOARD records with the most wins for player totals and one for position totals. A win that lifts a total above
+// the weakest entry replaces that entry with a compare-and-swap. Two processes racing for the same entry can both
+// miss, or briefly list one record twice, until either wins again; reads skip the duplicates.
+//
+// File: "DTS1", slot count (4 bytes), "boards built" marker (4), padding to 16, the player and position boards
+// (BOARD slot numbers plus one each, 0 for none, 4 bytes apiece), padding to 128 bytes, then the slots:
+//   key (8) | wins (8) | losses (8) | moves (8) | label length (4) | label (up to 92 bytes, UTF-8)
+// The key is a hash of the label, which reads "player @ rules [piles]" with "*" standing for all players or positions.
+// Files written before there were boards have no marker, and their boards are filled by one scan when first opened.
+//
+// Usage: java TournamentStats [file] [top]   (prints the leaderboard)
+public final class TournamentStats implements AutoCloseable {
+
+    private static final int MAGIC = 0x44545331; // "DTS1"
+    private static final int RECORD = 128;
+    private static final int KEY = 0;
+    private static final int WINS = 8;
+    private static final int LOSSES = 16;
+    private static final int MOVES = 24;
+    private static final int LABEL_LENGTH = 32;
+    private static final int LABEL = 36;
+    private static final int MAX_LABEL = RECORD - LABEL;
+    private static final int BOARDS_BUILT = 0x4C445242; // "LDRB"
+    private static final int BOARDS_MARKER = 8;
+    private static final int PLAYER_BOARD = 16;
+    public static final int BOARD = 12;
+    private static final int POSITION_BOARD = PLAYER_BOARD + BOARD * Integer.BYTES;
+    public static final String ALL = "*";
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+    private volatile boolean full; // reported that a round was dropped
+
+    // What one record holds.
+    public record Stats(String label, long wins, long losses, long moves) {
+        public long rounds() {
+            return wins + losses;
+        }
+
+        public double averageMoves() {
+            return rounds() == 0 ? 0 : (double) moves / rounds();
+        }
+    }
+
+    // Opens the statistics file, creating it with room for the given number of records (rounded up to a power of two)
+    // if it does not exist. An existing file keeps its own size.
+    public TournamentStats(Path file, int slots) throws IOException {
+        if (slots < 2 || slots > 1 << 24) {
+            throw new IllegalArgumentException("Slots must be between 2 and 2^24: " + slots);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.lock(); // one process initializes a new file; the others wait and then read it
+            try {
+                header = channel.map(FileChannel.MapMode.READ_WRITE, 0, RECORD);
+                int capacity;
+                if (header.getInt(0) == MAGIC) {
+                    capacity = header.getInt(4);
+                    if (Integer.bitCount(capacity) != 1 || channel.size() != (long) (capacity + 1) * RECORD) {
+                        throw new IOException("Damaged statistics file " + file);
+                    }
+                } else {
+                    capacity = Integer.highestOneBit(slots - 1) << 1;
+                    header.putInt(4, capacity);
+                    header.putInt(BOARDS_MARKER, BOARDS_BUILT); // an empty table's boards are empty
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) (capacity + 1) * RECORD);
+                    header.putInt(0, MAGIC); // last, so a crash during creation leaves a file that is created again
+                    header.force();
+                }
+                mask = capacity - 1;
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, RECORD, (long) capacity * RECORD);
+                if (header.getInt(BOARDS_MARKER) != BOARDS_BUILT) {
+                    buildBoards();
+                    header.putInt(BOARDS_MARKER, BOARDS_BUILT);
+                    header.force();
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // The statistics file the front-ends use: the stats.file system property, or doubletrouble-stats.bin in the
+    // temporary directory. Returns null (and nothing is counted) if it cannot be opened.
+    public static TournamentStats openDefault() {
+        Path file = Path.of(System.getProperty("stats.file",
+                Path.of(System.getProperty("java.io.tmpdir"), "doubletrouble-stats.bin").toString()));
+        try {
+            return new TournamentStats(file, 1 << 16);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Playing without lifetime statistics: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The name the front-ends count the human's rounds under: the stats.player system property, or the login name.
+    public static String defaultPlayer() {
+        return System.getProperty("stats.player", System.getProperty("user.name", "player"));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Counts a finished round for the player on the starting position, in its own record and both totals. Never
+    // throws for a full table: the round is left out of the records that have no slot.
+    public void recordRound(String player, OctalGame rules, long[] startingPiles, boolean won, long moves) {
+        String position = position(rules, startingPiles);
+        add(slot(player + " @ " + position, true), won, moves, -1);
+        add(slot(player + " @ " + ALL, true), won, moves, PLAYER_BOARD);
+        add(slot(ALL + " @ " + position, true), won, moves, POSITION_BOARD);
+    }
+
+    private void add(int at, boolean won, long moves, int board) {
+        if (at < 0) {
+            if (!full) {
+                full = true;
+                System.err.println("Statistics file is full (" + capacity() + " records); rounds under new names and"
+                        + " positions are not counted");
+            }
+            return;
+        }
+        LONGS.getAndAdd(buffer, at + MOVES, moves);
+        LONGS.getAndAdd(buffer, at + (won ? WINS : LOSSES), 1L);
+        if (won && board >= 0) {
+            rank(board, at);
+        }
+    }
+
+    // Puts the record on the board if it now has more wins than the weakest entry, unless it is there already.
+    private void rank(int board, int at) {
+        int entry = at / RECORD + 1;
+        long wins = (long) LONGS.getOpaque(buffer, at + WINS);
+        int weakest = -1;
+        int weakestEntry = 0;
+        long weakestWins = Long.MAX_VALUE;
+        for (int i = 0; i < BOARD; i++) {
+            int offset = board + i * Integer.BYTES;
+            int listed = (int) INTS.getAcquire(header, offset);
+            if (listed == entry) {
+                return;
+            }
+            long listedWins = listed == 0 ? -1 : (long) LONGS.getOpaque(buffer, (listed - 1) * RECORD + WINS);
+            if (listedWins < weakestWins) {
+                weakest = offset;
+                weakestEntry = listed;
+                weakestWins = listedWins;
+            }
+        }
+        if (wins > weakestWins) {
+            INTS.compareAndSet(header, weakest, weakestEntry, entry); // if another process got there first, it waits
+        }
+    }
+
+    // Fills the boards from every total in the table, for a file written before there were boards.
+    private void buildBoards() {
+        for (int i = 0; i <= mask; i++) {
+            int at = i * RECORD;
+            if ((long) LONGS.getAcquire(buffer, at + KEY) == 0 || buffer.getInt(at + LABEL_LENGTH) == 0) {
+                continue;
+            }
+            String label = read(at).label();
+            if (label.endsWith(" @ " + ALL)) {
+                rank(PLAYER_BOARD, at);
+            } else if (label.startsWith(ALL + " @ ")) {
+                rank(POSITION_BOARD, at);
+            }
+        }
+    }
+
+    // The player's statistics on the starting position; ALL for either means every player or every position.
+    // Null if no round has been counted for them.
+    public Stats lookup(String player, String position) {
+        int at = slot(player + " @ " + position, false);
+        return at < 0 ? null : read(at);
+    }
+
+    public static String position(OctalGame rules, long[] piles) {
+        return rules + " " + Arrays.toString(piles);
+    }
+
+    // The players with the most wins over all positions, most first: at most top of them, read from the board when
+    // top is at most BOARD, otherwise found by scanning the table.
+    public List<Stats> topPlayers(int top) {
+        return top <= BOARD ? board(PLAYER_BOARD, top)
+                : top(all().stream().filter(s -> s.label().endsWith(" @ " + ALL)), top);
+    }
+
+    // The starting positions with the most wins over all players, most first, as topPlayers.
+    public List<Stats> topPositions(int top) {
+        return top <= BOARD ? board(POSITION_BOARD, top)
+                : top(all().stream().filter(s -> s.label().startsWith(ALL + " @ ")), top);
+    }
+
+    private List<Stats> board(int board, int top) {
+        List<Stats> records = new ArrayList<>(BOARD);
+        int[] seen = new int[BOARD];
+        for (int i = 0; i < BOARD; i++) {
+            int listed = (int) INTS.getAcquire(header, board + i * Integer.BYTES);
+            seen[i] = listed;
+            if (listed != 0 && Arrays.stream(seen, 0, i).noneMatch(e -> e == listed)) {
+                Stats stats = read((listed - 1) * RECORD);
+                if (!stats.label().isEmpty()) {
+                    records.add(stats);
+                }
+            }
+        }
+        return top(records.stream(), top);
+    }
+
+    private static List<Stats> top(Stream<Stats> records, int top) {
+        return records.sorted(Comparator.comparingLong(Stats::wins).reversed()).limit(top).toList();
+    }
+
+    // Every named record, in table order. A record whose label is not written yet is left out until it is. This reads
+    // the whole table; the leaderboards are topPlayers and topPositions.
+    public List<Stats> all() {
+        List<Stats> records = new ArrayList<>();
+        for (int i = 0; i <= mask; i++) {
+            int at = i * RECORD;
+            if ((long) LONGS.getAcquire(buffer, at + KEY) != 0 && buffer.getInt(at + LABEL_LENGTH) != 0) {
+                records.add(read(at));
+            }
+        }
+        return records;
+    }
+
+    private Stats read(int at) {
+        int length = Math.min(Math.max(buffer.getInt(at + LABEL_LENGTH), 0), MAX_LABEL);
+        VarHandle.acquireFence(); // pairs with writeLabel's release
+        byte[] label = new byte[length];
+        buffer.get(at + LABEL, label);
+        return new Stats(new String(label, StandardCharsets.UTF_8), (long) LONGS.getOpaque(buffer, at + WINS),
+                (long) LONGS.getOpaque(buffer, at + LOSSES), (long) LONGS.getOpaque(buffer, at + MOVES));
+    }
+
+    // Offset of the label's record, claiming an empty slot for it if create is set; -1 if it is absent, or if it
+    // would be created but the table is full.
+    private int slot(String label, boolean create) {
+        long key = key(label);
+        for (int probe = 0; probe <= mask; probe++) {
+            int at = (int) ((key + probe) & mask) * RECORD;
+            long found = (long) LONGS.getAcquire(buffer, at + KEY);
+            if (found == 0) {
+                if (!create) {
+                    return -1;
+                }
+                if (LONGS.compareAndSet(buffer, at + KEY, 0L, key)) {
+                    writeLabel(at, label);
+                    return at;
+                }
+                found = (long) LONGS.getAcquire(buffer, at + KEY); // another process claimed it first
+            }
+            if (found == key) {
+                if (create && buffer.getInt(at + LABEL_LENGTH) == 0) {
+                    // Its claimer died before writing the label, or has yet to. Writing it too is harmless: the key is
+                    // a hash of the label, so both write the same bytes.
+                    writeLabel(at, label);
+                }
+                return at;
+            }
+        }
+        return -1;
+    }
+
+    // Writes the label and then its length, so a reader that sees the length sees the whole label.
+    private void writeLabel(int at, String label) {
+        byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_LABEL);
+        buffer.put(at + LABEL, bytes, 0, length);
+        VarHandle.releaseFence();
+        buffer.putInt(at + LABEL_LENGTH, length);
+    }
+
+    // FNV-1a over the label, finished with the SplitMix64 mixer; never 0, which marks an empty slot.
+    private static long key(String label) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < label.length(); i++) {
+            hash = (hash ^ label.charAt(i)) * 0x100000001B3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return hash == 0 ? 1 : hash;
+    }
+
+    // Counts the human's rounds, to be set as a tournament's event sink. Only the thread driving it may use it.
+    public GameEventSink recorder(String player, NimEngine engine) {
+        return new GameEventSink() {
+            private long[] startingPiles = engine.piles();
+            private long moves;
+
+            @Override
+            public void tournamentStarted(long roundsNeededToWin) {
+                startingPiles = engine.piles();
+            }
+
+            @Override
+            public void roundStarted(int firstToMove) {
+                moves = 0;
+            }
+
+            @Override
+            public void moved(int side, long move) {
+                moves++;
+            }
+
+            @Override
+            public void roundWon(int side, long wins) {
+                recordRound(player, engine.rules(), startingPiles, side == Tournament.PLAYER, moves);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(args.length > 0 ? args[0]
+                : System.getProperty("stats.file", Path.of(System.getProperty("java.io.tmpdir"), "doubletrouble-stats.bin").toString()));
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try (TournamentStats stats = new TournamentStats(file, 1 << 16)) {
+            print("Players", stats.topPlayers(top));
+            print("Starting positions", stats.topPositions(top));
+        }
+    }
+
+    private static void print(String title, List<Stats> records) {
+        System.out.println(title + ":");
+        records.forEach(s ->
+                System.out.printf("  %-40s %,8d won %,8d lost  %.1f moves per round%n",
+                        s.label(), s.wins(), s.losses(), s.averageMoves()));
+    }
+}
@@ -0,0 +1,122 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Fixed-size cache of search results keyed by NimEngine.hash(), shared by every thread of a search and kept from one
+// move (and one game of a tournament) to the next, so a position reached again through another move order or in a later
+// game costs one probe instead of a re-search.
+//
+// The table is a single long[] of two-slot buckets. The first slot is depth-preferred: it only gives way to a result
+// searched at least as deeply, or to any result once its own entry is from an earlier search. The second slot always
+// takes whatever the first one refused, so recent shallow results are still cached.
+//
+// There are no locks. Each slot is three words (check, data, move) with check = hash ^ data ^ move, so a reader that
+// sees a slot half-overwritten by another thread finds that the words do not match the hash and treats it as a miss.
+public final class TranspositionTable {
+
+    // Bound types: whether the stored score is exact or only a bound from an alpha-beta cut-off.
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    public static final int MAX_DEPTH = 255;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int SLOT_WORDS = 3;
+    private static final int BUCKET_WORDS = 2 * SLOT_WORDS;
+
+    // Layout of the data word. The bound is never 0, so neither is the data word of a stored entry.
+    private static final int DEPTH_SHIFT = 16;
+    private static final int BOUND_SHIFT = 24;
+    private static final int GENERATION_SHIFT = 26;
+
+    // The result of a successful probe. Each searching thread reuses one.
+    public static final class Hit {
+        int score;
+        int depth;
+        int bound;
+        long move;
+
+        public int score() {
+            return score;
+        }
+
+        public int depth() {
+            return depth;
+        }
+
+        public int bound() {
+            return bound;
+        }
+
+        public long move() {
+            return move;
+        }
+    }
+
+    private final long[] words;
+    private final long bucketMask;
+    private volatile int generation;
+
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1 || megabytes > 16384) {
+            throw new IllegalArgumentException("Table size must be between 1 and 16384 MB: " + megabytes);
+        }
+        long buckets = Long.highestOneBit((megabytes * (1L << 20)) / (BUCKET_WORDS * Long.BYTES));
+        words = new long[(int) (buckets * BUCKET_WORDS)];
+        bucketMask = buckets - 1;
+    }
+
+    // Marks the start of a new search, so entries from earlier ones lose their claim on the depth-preferred slots.
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    // Looks the position up and fills in the hit. Returns false if it is not in the table.
+    public boolean probe(long hash, Hit hit) {
+        int bucket = bucket(hash);
+        return read(bucket, hash, hit) || read(bucket + SLOT_WORDS, hash, hit);
+    }
+
+    // Records a search result. The score must fit in 16 bits and the depth is clamped to MAX_DEPTH.
+    public void store(long hash, int score, int depth, int bound, long move) {
+        int current = generation;
+        long data = (score & 0xFFFFL)
+                | (long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) current << GENERATION_SHIFT;
+        int bucket = bucket(hash);
+        long oldData = (long) WORDS.getOpaque(words, bucket + 1);
+        long oldMove = (long) WORDS.getOpaque(words, bucket + 2);
+        boolean sameKey = ((long) WORDS.getOpaque(words, bucket) ^ oldData ^ oldMove) == hash;
+        boolean stale = (int) (oldData >>> GENERATION_SHIFT & 0xFF) != current;
+        int slot = oldData == 0 || sameKey || stale || depth >= (int) (oldData >>> DEPTH_SHIFT & 0xFF)
+                ? bucket : bucket + SLOT_WORDS;
+        WORDS.setOpaque(words, slot + 2, move);
+        WORDS.setOpaque(words, slot + 1, data);
+        WORDS.setOpaque(words, slot, hash ^ data ^ move);
+    }
+
+    private boolean read(int slot, long hash, Hit hit) {
+        long check = (long) WORDS.getOpaque(words, slot);
+        long data = (long) WORDS.getOpaque(words, slot + 1);
+        long move = (long) WORDS.getOpaque(words, slot + 2);
+        if (data == 0 || (check ^ data ^ move) != hash) {
+            return false;
+        }
+        hit.score = (short) data;
+        hit.depth = (int) (data >>> DEPTH_SHIFT & 0xFF);
+        hit.bound = (int) (data >>> BOUND_SHIFT & 0x3);
+        hit.move = move;
+        return true;
+    }
+
+    private int bucket(long hash) {
+        return (int) (hash & bucketMask) * BUCKET_WORDS;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Arrays;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// BatchEvaluator's column passes written against the incubating Vector API, so they run as SIMD instructions of the
+// machine's widest vector shape whatever C2's auto-vectorizer makes of the scalar loops. Only BatchEvaluator calls
+// these, and only when the JVM was started with --add-modules jdk.incubator.vector; each pass finishes the last
+// partial vector with the scalar loop.
+final class VectorBatchKernels {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private VectorBatchKernels() {
+    }
+
+    static void nimSums(long[][] columns, int start, int end, long[] nimSums) {
+        System.arraycopy(columns[0], start, nimSums, start, end - start);
+        int vectorEnd = start + SPECIES.loopBound(end - start);
+        for (int p = 1; p < columns.length; p++) {
+            long[] column = columns[p];
+            int i = start;
+            for (; i < vectorEnd; i += SPECIES.length()) {
+                LongVector.fromArray(SPECIES, nimSums, i)
+                        .lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, column, i))
+                        .intoArray(nimSums, i);
+            }
+            for (; i < end; i++) {
+                nimSums[i] ^= column[i];
+            }
+        }
+    }
+
+    static void winningMoves(long[][] columns, long[] nimSums, int start, int end, long[] winningMoves) {
+        Arrays.fill(winningMoves, start, end, NimEngine.NO_MOVE);
+        int vectorEnd = start + SPECIES.loopBound(end - start);
+        for (int p = 0; p < columns.length; p++) {
+            long[] column = columns[p];
+            long pileBits = NimEngine.move(p, 0);
+            int i = start;
+            for (; i < vectorEnd; i += SPECIES.length()) {
+                LongVector size = LongVector.fromArray(SPECIES, column, i);
+                LongVector target = size.lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, nimSums, i));
+                LongVector current = LongVector.fromArray(SPECIES, winningMoves, i);
+                VectorMask<Long> take = target.compare(VectorOperators.LT, size)
+                        .and(current.compare(VectorOperators.EQ, NimEngine.NO_MOVE));
+                current.blend(size.sub(target).or(pileBits), take).intoArray(winningMoves, i);
+            }
+            for (; i < end; i++) {
+                long size = column[i];
+                long target = size ^ nimSums[i];
+                long current = winningMoves[i];
+                boolean take = target < size & current == NimEngine.NO_MOVE;
+                winningMoves[i] = take ? pileBits | (size - target) : current;
+            }
+        }
+    }
+}
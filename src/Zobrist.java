@@ -0,0 +1,23 @@
+// Zobrist keys for pile states. A position's hash is the XOR of key(i, size) over its piles, so a move changes it by
+// two XORs and the engine keeps it up to date without rehashing.
+// Pile sizes go up to 2^40, far too many for the usual table of random numbers, so each key is derived by passing the
+// (pile, size) pair, packed like a move, through the SplitMix64 finaliser; that is as good as a table of random keys
+// for hashing purposes. An empty pile has key 0, so the hash ignores empty piles and the empty board hashes to 0.
+// No side-to-move key is needed: in an impartial game the value of a position does not depend on who is to move.
+final class Zobrist {
+
+    private static final long SEED = 0x6A09E667F3BCC909L;
+
+    private Zobrist() {
+    }
+
+    static long key(int pile, long size) {
+        if (size == 0) {
+            return 0;
+        }
+        long z = NimEngine.move(pile, size) + SEED;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}